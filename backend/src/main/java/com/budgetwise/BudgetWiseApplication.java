@@ -3,6 +3,7 @@ package com.budgetwise;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -10,6 +11,7 @@ import java.util.stream.Stream;
 
 @SpringBootApplication
 @EnableAsync
+@EnableScheduling
 public class BudgetWiseApplication {
 
 	public static void main(String[] args) {
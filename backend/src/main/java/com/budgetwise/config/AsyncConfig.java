@@ -0,0 +1,88 @@
+package com.budgetwise.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    // Boot only creates applicationTaskExecutor while no other Executor bean exists,
+    // so the pools below would leave Spring MVC starting a new thread per async
+    // request (streamed exports). Rebuilt here from spring.task.execution.*.
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder,
+            MeterRegistry meterRegistry) {
+        ThreadPoolTaskExecutor executor = builder.build();
+        registerExecutorMetrics(executor, "mvc-async", meterRegistry);
+        return executor;
+    }
+
+    // Receipt scans wait up to a minute on the AI provider, so they run on their
+    // own bounded pool instead of Tomcat workers. A full queue rejects new jobs.
+    @Bean(name = "receiptScanExecutor")
+    public ThreadPoolTaskExecutor receiptScanExecutor(MeterRegistry meterRegistry,
+            @Value("${receipts.jobs.workers:4}") int workers,
+            @Value("${receipts.jobs.queue-capacity:50}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("receipt-scan-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        registerExecutorMetrics(executor, "receipt-scan", meterRegistry);
+        return executor;
+    }
+
+    // Global cap for multi-receipt scans: each thread is one scan in flight, and
+    // per-user lanes (ReceiptBatchService) queue here when all threads are busy
+    @Bean(name = "receiptBatchExecutor")
+    public ThreadPoolTaskExecutor receiptBatchExecutor(MeterRegistry meterRegistry,
+            @Value("${receipts.batch.global-concurrency:32}") int globalConcurrency,
+            @Value("${receipts.batch.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(globalConcurrency);
+        executor.setMaxPoolSize(globalConcurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("receipt-batch-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        registerExecutorMetrics(executor, "receipt-batch", meterRegistry);
+        return executor;
+    }
+
+    // BCrypt is pure CPU: hashing runs on its own pool sized to the cores, so a
+    // login burst queues here (see PasswordHasher) instead of occupying every
+    // request thread with hashing
+    @Bean(name = "passwordHashExecutor")
+    public ThreadPoolTaskExecutor passwordHashExecutor(MeterRegistry meterRegistry,
+            @Value("${auth.hashing.workers:0}") int workers,
+            @Value("${auth.hashing.queue-capacity:100}") int queueCapacity) {
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        executor.initialize();
+
+        registerExecutorMetrics(executor, "password-hash", meterRegistry);
+        return executor;
+    }
+
+    private static void registerExecutorMetrics(ThreadPoolTaskExecutor executor, String name, MeterRegistry registry) {
+        Gauge.builder("executor.queued", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .tag("name", name).register(registry);
+        Gauge.builder("executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .tag("name", name).register(registry);
+    }
+}
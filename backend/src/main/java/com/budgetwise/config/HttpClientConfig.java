@@ -0,0 +1,110 @@
+package com.budgetwise.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * One pooled, keep-alive HTTP client for all outbound API calls (Gemini,
+ * Resend), so repeated calls reuse TLS connections instead of opening a new
+ * one each time. Pool usage is published as http.client.pool.* gauges.
+ *
+ * Streamed Gemini answers go through outboundStreamingClient instead, a JDK
+ * HttpClient whose line subscriber does not park a thread per open stream.
+ * It takes the same connect/read timeouts, but the JDK client exposes no
+ * connection pool statistics, so it has no http.client.pool.* gauges; its open
+ * streams each hold a Gemini bulkhead permit and show in
+ * provider.bulkhead.in_use{provider=gemini}.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${outbound.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${outbound.http.max-per-host:20}")
+    private int maxPerHost;
+
+    @Value("${outbound.http.connect-timeout-seconds:10}")
+    private long connectTimeoutSeconds;
+
+    // Gemini can take close to a minute to answer
+    @Value("${outbound.http.read-timeout-seconds:60}")
+    private long readTimeoutSeconds;
+
+    // How long a caller may wait for a free pooled connection
+    @Value("${outbound.http.pool-wait-seconds:5}")
+    private long poolWaitSeconds;
+
+    @Value("${outbound.http.idle-evict-seconds:30}")
+    private long idleEvictSeconds;
+
+    @Bean
+    public PoolingHttpClientConnectionManager outboundConnectionManager(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager manager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxPerHost)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofSeconds(connectTimeoutSeconds))
+                        .setSocketTimeout(Timeout.ofSeconds(readTimeoutSeconds))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        Gauge.builder("http.client.pool.leased", manager, m -> m.getTotalStats().getLeased())
+                .tag("pool", "outbound").register(meterRegistry);
+        Gauge.builder("http.client.pool.available", manager, m -> m.getTotalStats().getAvailable())
+                .tag("pool", "outbound").register(meterRegistry);
+        Gauge.builder("http.client.pool.pending", manager, m -> m.getTotalStats().getPending())
+                .tag("pool", "outbound").register(meterRegistry);
+        Gauge.builder("http.client.pool.max", manager, m -> m.getTotalStats().getMax())
+                .tag("pool", "outbound").register(meterRegistry);
+        return manager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient outboundHttpClient(PoolingHttpClientConnectionManager outboundConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(outboundConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofSeconds(poolWaitSeconds))
+                        .setResponseTimeout(Timeout.ofSeconds(readTimeoutSeconds))
+                        .build())
+                // The default strategy silently retries 429/503 after a second, which
+                // piles more load onto a struggling provider; failures surface instead
+                .disableAutomaticRetries()
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate outboundRestTemplate(RestTemplateBuilder builder, CloseableHttpClient outboundHttpClient) {
+        return builder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(outboundHttpClient))
+                .build();
+    }
+
+    @Bean
+    public HttpClient outboundStreamingClient() {
+        return HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .build();
+    }
+}
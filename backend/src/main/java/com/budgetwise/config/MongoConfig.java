@@ -0,0 +1,68 @@
+package com.budgetwise.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.List;
+
+@Configuration
+public class MongoConfig {
+
+    // Calendar dates (expense/income dates, goal deadlines) are stored as UTC
+    // midnight so range queries and $dateToString agree regardless of the
+    // server's time zone.
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(
+                new LocalDateToDateConverter(),
+                new DateToLocalDateConverter(),
+                new StringToLocalDateConverter()));
+    }
+
+    // Accepts the legacy "YYYY-MM-DD" strings (and ISO date-times) written before
+    // dates were typed. Returns null for blank or unparseable values.
+    public static LocalDate parseLegacyDate(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            return LocalDate.parse(trimmed.length() > 10 ? trimmed.substring(0, 10) : trimmed);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    @WritingConverter
+    static class LocalDateToDateConverter implements Converter<LocalDate, Date> {
+        @Override
+        public Date convert(LocalDate source) {
+            return Date.from(source.atStartOfDay(ZoneOffset.UTC).toInstant());
+        }
+    }
+
+    @ReadingConverter
+    static class DateToLocalDateConverter implements Converter<Date, LocalDate> {
+        @Override
+        public LocalDate convert(Date source) {
+            return source.toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+        }
+    }
+
+    // Lets documents that the migration has not reached yet still load
+    @ReadingConverter
+    static class StringToLocalDateConverter implements Converter<String, LocalDate> {
+        @Override
+        public LocalDate convert(String source) {
+            return parseLegacyDate(source);
+        }
+    }
+}
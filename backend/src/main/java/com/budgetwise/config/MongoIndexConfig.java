@@ -0,0 +1,50 @@
+package com.budgetwise.config;
+
+import com.budgetwise.model.Expense;
+import com.budgetwise.model.Goal;
+import com.budgetwise.model.Income;
+import com.budgetwise.model.MerchantCategory;
+import com.budgetwise.model.MonthlyRollup;
+import com.budgetwise.model.OutboxEmail;
+import com.budgetwise.model.ReceiptScan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.List;
+
+@Configuration
+public class MongoIndexConfig {
+
+    // Spring Boot no longer creates annotated indexes on its own
+    // (spring.data.mongodb.auto-index-creation defaults to false), so the
+    // query-critical ones are ensured explicitly for these collections.
+    private static final List<Class<?>> INDEXED_ENTITIES = List.of(
+            Expense.class, Income.class, Goal.class, MonthlyRollup.class, ReceiptScan.class,
+            MerchantCategory.class, OutboxEmail.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoMappingContext mappingContext;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        for (Class<?> entity : INDEXED_ENTITIES) {
+            IndexOperations indexOps = mongoTemplate.indexOps(entity);
+            try {
+                resolver.resolveIndexFor(entity).forEach(indexOps::ensureIndex);
+            } catch (Exception e) {
+                System.err.println("Failed to ensure indexes for " + entity.getSimpleName() + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.budgetwise.config;
+
+import com.budgetwise.util.ProviderGuard;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class ResilienceConfig {
+
+    @Bean
+    public ProviderGuard geminiGuard(MeterRegistry meterRegistry,
+            @Value("${resilience.gemini.failure-threshold:5}") int failureThreshold,
+            @Value("${resilience.gemini.open-seconds:30}") long openSeconds,
+            @Value("${resilience.gemini.max-concurrent:16}") int maxConcurrent,
+            @Value("${resilience.gemini.bulkhead-wait-ms:0}") long bulkheadWaitMs) {
+        return new ProviderGuard("gemini", "AI service", failureThreshold, Duration.ofSeconds(openSeconds),
+                maxConcurrent, Duration.ofMillis(bulkheadWaitMs), meterRegistry);
+    }
+
+    @Bean
+    public ProviderGuard resendGuard(MeterRegistry meterRegistry,
+            @Value("${resilience.resend.failure-threshold:5}") int failureThreshold,
+            @Value("${resilience.resend.open-seconds:30}") long openSeconds,
+            @Value("${resilience.resend.max-concurrent:8}") int maxConcurrent,
+            @Value("${resilience.resend.bulkhead-wait-ms:0}") long bulkheadWaitMs) {
+        return new ProviderGuard("resend", "Email service", failureThreshold, Duration.ofSeconds(openSeconds),
+                maxConcurrent, Duration.ofMillis(bulkheadWaitMs), meterRegistry);
+    }
+}
@@ -1,8 +1,13 @@
 package com.budgetwise.controller;
 
 import com.budgetwise.dto.AuthDto;
+import com.budgetwise.security.AuthRateLimiter;
+import com.budgetwise.security.PasswordHasher;
 import com.budgetwise.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,6 +21,24 @@ public class AuthController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private AuthRateLimiter authRateLimiter;
+
+    @ExceptionHandler(AuthRateLimiter.RateLimitedException.class)
+    public ResponseEntity<?> rateLimited(AuthRateLimiter.RateLimitedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("success", false, "message", e.getMessage()));
+    }
+
+    // Password hashing is saturated (see PasswordHasher); tell clients to back off briefly
+    @ExceptionHandler(PasswordHasher.HashingBusyException.class)
+    public ResponseEntity<?> hashingBusy(PasswordHasher.HashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("success", false, "message", e.getMessage()));
+    }
+
     @PostMapping(value = "/signup", consumes = { MediaType.MULTIPART_FORM_DATA_VALUE })
     public ResponseEntity<AuthDto.AuthResponse> signup(
             @RequestPart("name") String name,
@@ -23,7 +46,10 @@ public class AuthController {
             @RequestPart("username") String username,
             @RequestPart("password") String password,
             @RequestPart(value = "mobile", required = false) String mobile,
-            @RequestPart(value = "profileImage", required = false) MultipartFile profileImage) {
+            @RequestPart(value = "profileImage", required = false) MultipartFile profileImage,
+            HttpServletRequest httpRequest) {
+        // Hashes a password and emails an OTP, so it shares the OTP-sending buckets
+        authRateLimiter.check("send-otp", httpRequest, email);
         AuthDto.SignupRequest request = new AuthDto.SignupRequest();
         request.setName(name);
         request.setEmail(email);
@@ -36,7 +62,9 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<AuthDto.AuthResponse> login(@RequestBody AuthDto.LoginRequest request) {
+    public ResponseEntity<AuthDto.AuthResponse> login(@RequestBody AuthDto.LoginRequest request,
+            HttpServletRequest httpRequest) {
+        authRateLimiter.check("login", httpRequest, request.getIdentifier());
         AuthDto.AuthResponse response = userService.login(request);
         // If message contains "not verified", stick to 403, otherwise 200 or 401
         int status = response.isSuccess() ? 200 : (response.getMessage().contains("verified") ? 403 : 401);
@@ -44,7 +72,8 @@ public class AuthController {
     }
 
     @PostMapping("/resend-otp")
-    public ResponseEntity<?> resendOtp(@RequestParam String identifier) {
+    public ResponseEntity<?> resendOtp(@RequestParam String identifier, HttpServletRequest httpRequest) {
+        authRateLimiter.check("send-otp", httpRequest, identifier);
         try {
             userService.resendOtp(identifier);
             return ResponseEntity.ok(Map.of("success", true, "message", "OTP resent successfully"));
@@ -56,8 +85,9 @@ public class AuthController {
     // Pass-through for verify-otp if not authenticated yet (e.g. signup flow)
     // Pass-through for verify-otp if not authenticated yet (e.g. signup flow)
     @PostMapping("/verify-otp")
-    public ResponseEntity<?> verifyOtp(@RequestBody Map<String, String> payload) {
+    public ResponseEntity<?> verifyOtp(@RequestBody Map<String, String> payload, HttpServletRequest httpRequest) {
         String identifier = payload.get("identifier"); // email or mobile
+        authRateLimiter.check("verify-otp", httpRequest, identifier);
         String otp = payload.get("otp");
         boolean verified = userService.verifyOtp(identifier, otp);
         if (verified) {
@@ -69,8 +99,9 @@ public class AuthController {
     // --- Forgot Password Endpoints ---
 
     @PostMapping("/forgot-password")
-    public ResponseEntity<?> forgotPassword(@RequestBody Map<String, String> payload) {
+    public ResponseEntity<?> forgotPassword(@RequestBody Map<String, String> payload, HttpServletRequest httpRequest) {
         String identifier = payload.get("identifier");
+        authRateLimiter.check("send-otp", httpRequest, identifier);
         try {
             userService.sendForgotPasswordOtp(identifier);
             return ResponseEntity.ok(Map.of("success", true, "message", "OTP sent successfully"));
@@ -82,8 +113,9 @@ public class AuthController {
     }
 
     @PostMapping("/verify-reset-otp")
-    public ResponseEntity<?> verifyResetOtp(@RequestBody Map<String, String> payload) {
+    public ResponseEntity<?> verifyResetOtp(@RequestBody Map<String, String> payload, HttpServletRequest httpRequest) {
         String identifier = payload.get("identifier");
+        authRateLimiter.check("verify-otp", httpRequest, identifier);
         String otp = payload.get("otp");
         try {
             String token = userService.verifyResetOtp(identifier, otp);
@@ -1,11 +1,13 @@
 package com.budgetwise.controller;
 
+import com.budgetwise.security.AuthenticatedUser;
 import com.budgetwise.service.CategoryService;
+import com.budgetwise.util.ConditionalGet;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.List;
 import java.util.Map;
@@ -18,14 +20,18 @@ public class CategoryController {
     private CategoryService categoryService;
 
     @GetMapping
-    public ResponseEntity<List<String>> getCategories(@AuthenticationPrincipal UserDetails userDetails) {
-        return ResponseEntity.ok(categoryService.getAllCategories(userDetails.getUsername()));
+    public ResponseEntity<List<String>> getCategories(@AuthenticationPrincipal AuthenticatedUser user,
+            ServletWebRequest webRequest) {
+        if (ConditionalGet.notModified(webRequest, categoryService.getCategoriesEtag(user.getUserId()))) {
+            return null;
+        }
+        return ResponseEntity.ok(categoryService.getAllCategories(user.getUserId()));
     }
 
     @PostMapping("/add")
-    public ResponseEntity<?> addCategory(@AuthenticationPrincipal UserDetails userDetails, @RequestBody Map<String, String> body) {
+    public ResponseEntity<?> addCategory(@AuthenticationPrincipal AuthenticatedUser user, @RequestBody Map<String, String> body) {
         try {
-            categoryService.addCategory(userDetails.getUsername(), body.get("name"));
+            categoryService.addCategory(user.getUserId(), body.get("name"));
             return ResponseEntity.ok(Map.of("success", true, "message", "Category added"));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
@@ -33,9 +39,9 @@ public class CategoryController {
     }
 
     @DeleteMapping("/delete")
-    public ResponseEntity<?> deleteCategory(@AuthenticationPrincipal UserDetails userDetails, @RequestParam String name) {
+    public ResponseEntity<?> deleteCategory(@AuthenticationPrincipal AuthenticatedUser user, @RequestParam String name) {
         try {
-            categoryService.deleteCategory(userDetails.getUsername(), name);
+            categoryService.deleteCategory(user.getUserId(), name);
             return ResponseEntity.ok(Map.of("success", true, "message", "Category deleted"));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
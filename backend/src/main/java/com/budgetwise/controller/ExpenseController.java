@@ -1,17 +1,38 @@
 package com.budgetwise.controller;
 
+import com.budgetwise.dto.BatchDto;
+import com.budgetwise.dto.ScanJobDto;
 import com.budgetwise.model.Expense;
-import com.budgetwise.service.AIService;
+import com.budgetwise.security.AuthenticatedUser;
 import com.budgetwise.service.ExpenseService;
+import com.budgetwise.service.MerchantCategoryService;
+import com.budgetwise.service.ReceiptBatchService;
+import com.budgetwise.service.ReceiptScanService;
+import com.budgetwise.service.ScanJobService;
+import com.budgetwise.util.ConditionalGet;
+import com.budgetwise.util.ExpenseExportWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Base64;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/expenses")
@@ -21,50 +42,235 @@ public class ExpenseController {
     private ExpenseService expenseService;
 
     @Autowired
-    private AIService aiService;
+    private ReceiptScanService receiptScanService;
+
+    @Autowired
+    private ScanJobService scanJobService;
+
+    @Autowired
+    private ReceiptBatchService receiptBatchService;
+
+    @Autowired
+    private MerchantCategoryService merchantCategoryService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @PostMapping("/scan-receipt")
-    public ResponseEntity<String> scanReceipt(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<String> scanReceipt(@AuthenticationPrincipal AuthenticatedUser user,
+            @RequestParam("file") MultipartFile file) {
         try {
-            byte[] bytes = file.getBytes();
-            String base64 = Base64.getEncoder().encodeToString(bytes);
-            String mimeType = file.getContentType() != null ? file.getContentType() : "image/jpeg";
-            String result = aiService.scanReceiptFromBase64(base64, mimeType);
-            return ResponseEntity.ok(result);
+            String result = receiptScanService.scan(file);
+            return ResponseEntity.ok(merchantCategoryService.applyToScan(user.getUserId(), result));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("{\"error\": \"" + e.getMessage() + "\"}");
         }
     }
 
+    // Several receipts scanned in parallel; the response lists results in upload order
+    @PostMapping("/scan-receipts")
+    public CompletableFuture<ResponseEntity<?>> scanReceipts(@AuthenticationPrincipal AuthenticatedUser user,
+            @RequestParam("files") List<MultipartFile> files) {
+        try {
+            return receiptBatchService.scanAll(user.getUserId(), files, item -> { })
+                    .thenApply(ResponseEntity::ok);
+        } catch (ReceiptBatchService.TooManyScansException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(e.getMessage()));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(e.getMessage()));
+        }
+    }
+
+    // Same as /scan-receipts, but each file's result is sent as a "result" event as soon
+    // as it is ready, followed by a "done" event
+    @PostMapping(value = "/scan-receipts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamScanReceipts(@AuthenticationPrincipal AuthenticatedUser user,
+            @RequestParam("files") List<MultipartFile> files) {
+        SseEmitter emitter = new SseEmitter();
+        try {
+            receiptBatchService.scanAll(user.getUserId(), files, item -> {
+                try {
+                    emitter.send(SseEmitter.event().name("result").data(item));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).whenComplete((results, error) -> {
+                try {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        String message = cause.getMessage() != null ? cause.getMessage() : "Scan failed";
+                        emitter.send(SseEmitter.event().name("error").data(Map.of("message", message)));
+                    } else {
+                        emitter.send(SseEmitter.event().name("done").data(Map.of("count", results.size())));
+                    }
+                    emitter.complete();
+                } catch (Exception e) {
+                    emitter.completeWithError(e); // client went away
+                }
+            });
+        } catch (ReceiptBatchService.TooManyScansException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "5").build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    // Job-based scanning: returns at once with a job id; the AI call runs in the background
+    @PostMapping("/scan-receipt/jobs")
+    public ResponseEntity<?> submitScanJob(@AuthenticationPrincipal AuthenticatedUser user,
+            @RequestParam("file") MultipartFile file) {
+        try {
+            return ResponseEntity.accepted().body(scanJobService.submit(user.getUserId(), file));
+        } catch (ScanJobService.QueueFullException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/scan-receipt/jobs/{jobId}")
+    public ResponseEntity<?> getScanJob(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(scanJobService.getJob(user.getUserId(), jobId));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    // Server-sent events: a "status" event now and a "result" event when the job finishes
+    @GetMapping(value = "/scan-receipt/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamScanJob(@AuthenticationPrincipal AuthenticatedUser user,
+            @PathVariable String jobId) throws IOException {
+        ScanJobDto.JobStatus current;
+        CompletableFuture<ScanJobDto.JobStatus> finished;
+        try {
+            current = scanJobService.getJob(user.getUserId(), jobId);
+            finished = scanJobService.awaitJob(user.getUserId(), jobId);
+        } catch (Exception e) {
+            // Unknown, expired or someone else's job, as for the polling endpoint
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        SseEmitter emitter = new SseEmitter();
+        emitter.send(SseEmitter.event().name("status").data(current));
+        finished.thenAccept(status -> {
+            try {
+                emitter.send(SseEmitter.event().name("result").data(status));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e); // client went away
+            }
+        });
+        return ResponseEntity.ok(emitter);
+    }
+
+    // Without cursor/limit the full list is returned, as older clients expect
     @GetMapping
-    public ResponseEntity<List<Expense>> getExpenses(@AuthenticationPrincipal UserDetails userDetails) {
-        return ResponseEntity.ok(expenseService.getAllExpenses(userDetails.getUsername()));
+    public ResponseEntity<?> getExpenses(@AuthenticationPrincipal AuthenticatedUser user,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            ServletWebRequest webRequest) {
+        try {
+            if (ConditionalGet.notModified(webRequest, expenseService.getExpensesEtag(user.getUserId()))) {
+                return null;
+            }
+            if (cursor == null && limit == null) {
+                if (category == null && from == null && to == null) {
+                    return ResponseEntity.ok(expenseService.getAllExpenses(user.getUserId()));
+                }
+                return ResponseEntity.ok(
+                        expenseService.getExpensesInRange(user.getUserId(), category, from, to));
+            }
+            return ResponseEntity.ok(expenseService.getExpensesPage(user.getUserId(), category, from, to,
+                    cursor, limit));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/summary")
+    public ResponseEntity<?> getSummary(@AuthenticationPrincipal AuthenticatedUser user) {
+        try {
+            return ResponseEntity.ok(expenseService.getSummary(user.getUserId()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Streams straight from a Mongo cursor; format is csv (default) or ndjson
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportExpenses(@AuthenticationPrincipal AuthenticatedUser user,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        if (!ndjson && !"csv".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Resolve the user and open the cursor while still on the request thread
+        Stream<Expense> expenses = expenseService.streamExpenses(user.getUserId(), category, from, to);
+        StreamingResponseBody body = out -> {
+            try (expenses) {
+                if (ndjson) {
+                    ExpenseExportWriter.writeNdjson(expenses, out, objectMapper);
+                } else {
+                    ExpenseExportWriter.writeCsv(expenses, out);
+                }
+            }
+        };
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"expenses." + (ndjson ? "ndjson" : "csv") + "\"")
+                .contentType(ndjson ? MediaType.parseMediaType("application/x-ndjson")
+                        : MediaType.parseMediaType("text/csv;charset=UTF-8"))
+                .body(body);
     }
 
     @PostMapping
-    public ResponseEntity<?> addExpense(@AuthenticationPrincipal UserDetails userDetails,
+    public ResponseEntity<?> addExpense(@AuthenticationPrincipal AuthenticatedUser user,
             @RequestBody Expense expense) {
         try {
-            return ResponseEntity.ok(expenseService.addExpense(userDetails.getUsername(), expense));
+            return ResponseEntity.ok(expenseService.addExpense(user.getUserId(), expense));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<?> applyBatch(@AuthenticationPrincipal AuthenticatedUser user,
+            @RequestBody BatchDto.ExpenseBatchRequest request) {
+        try {
+            return ResponseEntity.ok(expenseService.applyBatch(user.getUserId(), request));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateExpense(@AuthenticationPrincipal UserDetails userDetails, @PathVariable String id,
+    public ResponseEntity<?> updateExpense(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable String id,
             @RequestBody Expense expense) {
         try {
-            return ResponseEntity.ok(expenseService.updateExpense(userDetails.getUsername(), id, expense));
+            return ResponseEntity.ok(expenseService.updateExpense(user.getUserId(), id, expense));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteExpense(@AuthenticationPrincipal UserDetails userDetails, @PathVariable String id) {
+    public ResponseEntity<?> deleteExpense(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable String id) {
         try {
-            expenseService.deleteExpense(userDetails.getUsername(), id);
+            expenseService.deleteExpense(user.getUserId(), id);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
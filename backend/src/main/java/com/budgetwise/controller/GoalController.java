@@ -1,14 +1,14 @@
 package com.budgetwise.controller;
 
 import com.budgetwise.model.Goal;
+import com.budgetwise.security.AuthenticatedUser;
 import com.budgetwise.service.GoalService;
+import com.budgetwise.util.ConditionalGet;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.context.request.ServletWebRequest;
 
 @RestController
 @RequestMapping("/api/goals")
@@ -17,33 +17,47 @@ public class GoalController {
     @Autowired
     private GoalService goalService;
 
+    // Without cursor/limit the full list is returned, as older clients expect
     @GetMapping
-    public ResponseEntity<List<Goal>> getGoals(@AuthenticationPrincipal UserDetails userDetails) {
-        return ResponseEntity.ok(goalService.getAllGoals(userDetails.getUsername()));
+    public ResponseEntity<?> getGoals(@AuthenticationPrincipal AuthenticatedUser user,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            ServletWebRequest webRequest) {
+        try {
+            if (ConditionalGet.notModified(webRequest, goalService.getGoalsEtag(user.getUserId()))) {
+                return null;
+            }
+            if (cursor == null && limit == null) {
+                return ResponseEntity.ok(goalService.getAllGoals(user.getUserId()));
+            }
+            return ResponseEntity.ok(goalService.getGoalsPage(user.getUserId(), cursor, limit));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @PostMapping
-    public ResponseEntity<?> addGoal(@AuthenticationPrincipal UserDetails userDetails, @RequestBody Goal goal) {
+    public ResponseEntity<?> addGoal(@AuthenticationPrincipal AuthenticatedUser user, @RequestBody Goal goal) {
         try {
-            return ResponseEntity.ok(goalService.addGoal(userDetails.getUsername(), goal));
+            return ResponseEntity.ok(goalService.addGoal(user.getUserId(), goal));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
     
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateGoal(@AuthenticationPrincipal UserDetails userDetails, @PathVariable String id, @RequestBody Goal goal) {
+    public ResponseEntity<?> updateGoal(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable String id, @RequestBody Goal goal) {
          try {
-             return ResponseEntity.ok(goalService.updateGoal(userDetails.getUsername(), id, goal));
+             return ResponseEntity.ok(goalService.updateGoal(user.getUserId(), id, goal));
          } catch (Exception e) {
              return ResponseEntity.badRequest().body(e.getMessage());
          }
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteGoal(@AuthenticationPrincipal UserDetails userDetails, @PathVariable String id) {
+    public ResponseEntity<?> deleteGoal(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable String id) {
         try {
-            goalService.deleteGoal(userDetails.getUsername(), id);
+            goalService.deleteGoal(user.getUserId(), id);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
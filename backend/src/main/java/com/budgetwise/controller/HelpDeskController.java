@@ -4,10 +4,12 @@ import com.budgetwise.model.Complaint;
 import com.budgetwise.service.AIService;
 import com.budgetwise.service.ComplaintService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import com.budgetwise.model.User; // Assuming User model exists to get email if needed, or extract from token
 // If strict user fetching is needed, might need UserService. keeping simple for now.
 
@@ -37,6 +39,12 @@ public class HelpDeskController {
         return ResponseEntity.ok(response);
     }
 
+    // Same answer as /chat, relayed as server-sent events while it is generated
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter chatStream(@RequestBody Map<String, String> request) {
+        return aiService.streamChatResponse(request.get("message"));
+    }
+
     @PostMapping("/complaint")
     public ResponseEntity<Complaint> submitComplaint(@RequestBody Map<String, String> request) {
         // In a real app, extract userId from SecurityContext
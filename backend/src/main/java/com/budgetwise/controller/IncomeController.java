@@ -1,14 +1,17 @@
 package com.budgetwise.controller;
 
 import com.budgetwise.model.Income;
+import com.budgetwise.security.AuthenticatedUser;
 import com.budgetwise.service.IncomeService;
+import com.budgetwise.util.ConditionalGet;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
-import java.util.List;
+import java.time.LocalDate;
 
 @RestController
 @RequestMapping("/api/incomes")
@@ -17,24 +20,44 @@ public class IncomeController {
     @Autowired
     private IncomeService incomeService;
 
+    // Without cursor/limit the full list is returned, as older clients expect
     @GetMapping
-    public ResponseEntity<List<Income>> getIncomes(@AuthenticationPrincipal UserDetails userDetails) {
-        return ResponseEntity.ok(incomeService.getAllIncomes(userDetails.getUsername()));
+    public ResponseEntity<?> getIncomes(@AuthenticationPrincipal AuthenticatedUser user,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            ServletWebRequest webRequest) {
+        try {
+            if (ConditionalGet.notModified(webRequest, incomeService.getIncomesEtag(user.getUserId()))) {
+                return null;
+            }
+            if (cursor == null && limit == null) {
+                if (from == null && to == null) {
+                    return ResponseEntity.ok(incomeService.getAllIncomes(user.getUserId()));
+                }
+                return ResponseEntity.ok(incomeService.getIncomesInRange(user.getUserId(), from, to));
+            }
+            return ResponseEntity.ok(incomeService.getIncomesPage(user.getUserId(), from, to,
+                    cursor, limit));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @PostMapping
-    public ResponseEntity<?> addIncome(@AuthenticationPrincipal UserDetails userDetails, @RequestBody Income income) {
+    public ResponseEntity<?> addIncome(@AuthenticationPrincipal AuthenticatedUser user, @RequestBody Income income) {
         try {
-            return ResponseEntity.ok(incomeService.addIncome(userDetails.getUsername(), income));
+            return ResponseEntity.ok(incomeService.addIncome(user.getUserId(), income));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteIncome(@AuthenticationPrincipal UserDetails userDetails, @PathVariable String id) {
+    public ResponseEntity<?> deleteIncome(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable String id) {
         try {
-            incomeService.deleteIncome(userDetails.getUsername(), id);
+            incomeService.deleteIncome(user.getUserId(), id);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -1,12 +1,12 @@
 package com.budgetwise.controller;
 
 import com.budgetwise.dto.ProfileDto;
+import com.budgetwise.security.AuthenticatedUser;
 import com.budgetwise.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -20,14 +20,14 @@ public class ProfileController {
     private UserService userService;
 
     @GetMapping("/profile")
-    public ResponseEntity<ProfileDto.ProfileResponse> getProfile(@AuthenticationPrincipal UserDetails userDetails) {
-        ProfileDto.ProfileResponse response = userService.getProfile(userDetails.getUsername());
+    public ResponseEntity<ProfileDto.ProfileResponse> getProfile(@AuthenticationPrincipal AuthenticatedUser user) {
+        ProfileDto.ProfileResponse response = userService.getProfile(user.getUserId());
         return ResponseEntity.ok(response);
     }
 
     @PutMapping(value = "/profile/update", consumes = { MediaType.MULTIPART_FORM_DATA_VALUE })
     public ResponseEntity<ProfileDto.ProfileResponse> updateProfile(
-            @AuthenticationPrincipal UserDetails userDetails,
+            @AuthenticationPrincipal AuthenticatedUser user,
             @RequestPart(value = "name", required = false) String name,
             @RequestPart(value = "email", required = false) String email,
             @RequestPart(value = "username", required = false) String username,
@@ -55,16 +55,16 @@ public class ProfileController {
         request.setRemoveBackgroundImage(Boolean.parseBoolean(removeBackgroundImage));
         request.setRemoveCustomization(Boolean.parseBoolean(removeCustomization));
 
-        ProfileDto.ProfileResponse response = userService.updateProfile(userDetails.getUsername(), request,
+        ProfileDto.ProfileResponse response = userService.updateProfile(user.getUserId(), request,
                 profileImage, backgroundImage);
         return ResponseEntity.status(response.isSuccess() ? 200 : 400).body(response);
     }
 
     @DeleteMapping("/profile/delete")
     public ResponseEntity<ProfileDto.ProfileResponse> deleteAccount(
-            @AuthenticationPrincipal UserDetails userDetails,
+            @AuthenticationPrincipal AuthenticatedUser user,
             @RequestBody Map<String, String> body) {
-        ProfileDto.ProfileResponse response = userService.deleteProfile(userDetails.getUsername(),
+        ProfileDto.ProfileResponse response = userService.deleteProfile(user.getUserId(),
                 body.get("password"));
         return ResponseEntity.status(response.isSuccess() ? 200 : 403).body(response);
     }
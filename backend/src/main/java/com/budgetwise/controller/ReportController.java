@@ -0,0 +1,40 @@
+package com.budgetwise.controller;
+
+import com.budgetwise.security.AuthenticatedUser;
+import com.budgetwise.service.RollupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/reports")
+public class ReportController {
+
+    @Autowired
+    private RollupService rollupService;
+
+    // from/to are YYYY-MM and both optional
+    @GetMapping("/monthly")
+    public ResponseEntity<?> getMonthly(@AuthenticationPrincipal AuthenticatedUser user,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to) {
+        try {
+            return ResponseEntity.ok(rollupService.getMonthlyRollups(user.getUserId(), from, to));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/monthly/rebuild")
+    public ResponseEntity<?> rebuildMonthly(@AuthenticationPrincipal AuthenticatedUser user) {
+        try {
+            rollupService.rebuild(user.getUserId());
+            return ResponseEntity.ok(Map.of("success", true, "message", "Monthly rollups rebuilt"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+}
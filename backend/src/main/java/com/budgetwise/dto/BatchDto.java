@@ -0,0 +1,47 @@
+package com.budgetwise.dto;
+
+import com.budgetwise.model.Expense;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchDto {
+
+    @Data
+    public static class ExpenseBatchRequest {
+        private List<Expense> creates = new ArrayList<>();
+        private List<Expense> updates = new ArrayList<>(); // each must carry its id
+        private List<String> deletes = new ArrayList<>();
+    }
+
+    @Data
+    public static class ItemResult {
+        private String op; // create, update or delete
+        private int index; // position within its own list in the request
+        private String id;
+        private boolean success;
+        private String message;
+
+        public ItemResult(String op, int index, String id, boolean success, String message) {
+            this.op = op;
+            this.index = index;
+            this.id = id;
+            this.success = success;
+            this.message = message;
+        }
+    }
+
+    @Data
+    public static class BatchResponse {
+        private List<ItemResult> results;
+        private int succeeded;
+        private int failed;
+
+        public BatchResponse(List<ItemResult> results) {
+            this.results = results;
+            this.succeeded = (int) results.stream().filter(ItemResult::isSuccess).count();
+            this.failed = results.size() - this.succeeded;
+        }
+    }
+}
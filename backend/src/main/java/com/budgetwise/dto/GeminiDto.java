@@ -0,0 +1,57 @@
+package com.budgetwise.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * The parts of a Gemini generateContent reply we use. Everything else
+ * (safety ratings, citations, model version...) is skipped while parsing.
+ */
+public class GeminiDto {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Response(List<Candidate> candidates, UsageMetadata usageMetadata) {
+
+        public Candidate firstCandidate() {
+            return candidates != null && !candidates.isEmpty() ? candidates.get(0) : null;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Candidate(Content content, String finishReason) {
+
+        // Text of all parts joined; null when the candidate carries no text
+        public String text() {
+            if (content == null || content.parts() == null || content.parts().isEmpty()) {
+                return null;
+            }
+            if (content.parts().size() == 1) {
+                return content.parts().get(0).text();
+            }
+            StringBuilder text = new StringBuilder();
+            for (Part part : content.parts()) {
+                if (part.text() != null) {
+                    text.append(part.text());
+                }
+            }
+            return text.toString();
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Content(List<Part> parts) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Part(String text) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record UsageMetadata(Integer promptTokenCount, Integer candidatesTokenCount, Integer totalTokenCount) {
+    }
+
+    // The receipt JSON the scan prompt asks for
+    public record Receipt(String title, double amount, String category, String date) {
+    }
+}
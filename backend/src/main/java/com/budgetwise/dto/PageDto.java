@@ -0,0 +1,21 @@
+package com.budgetwise.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+public class PageDto {
+
+    @Data
+    public static class CursorPage<T> {
+        private List<T> items;
+        private String nextCursor; // null when there are no more pages
+        private boolean hasMore;
+
+        public CursorPage(List<T> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+            this.hasMore = nextCursor != null;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.budgetwise.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+public class ScanJobDto {
+
+    @Data
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class JobStatus {
+        private String jobId;
+        private String status; // QUEUED, RUNNING, DONE, FAILED
+        @JsonRawValue
+        private String result; // the scan JSON, embedded as-is once DONE
+        private String error;
+        private Instant submittedAt;
+        private Instant finishedAt;
+    }
+
+    // One file of a multi-receipt scan; index is its position in the upload
+    @Data
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class BatchItem {
+        private int index;
+        private String fileName;
+        private String status; // DONE or FAILED
+        @JsonRawValue
+        private String result;
+        private String error;
+    }
+}
@@ -0,0 +1,42 @@
+package com.budgetwise.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SummaryDto {
+
+    @Data
+    public static class SpendingSummary {
+        private List<CategoryTotal> byCategory = new ArrayList<>();
+        private List<MonthTotal> byMonth = new ArrayList<>();
+        private Totals totals = new Totals();
+    }
+
+    @Data
+    public static class CategoryTotal {
+        private String category;
+        private double total;
+        private long count;
+    }
+
+    @Data
+    public static class MonthTotal {
+        private String month; // YYYY-MM
+        private double expenses;
+        private double incomes;
+        private long expenseCount;
+        private long incomeCount;
+        private double net; // incomes - expenses
+    }
+
+    @Data
+    public static class Totals {
+        private double expenses;
+        private double incomes;
+        private long expenseCount;
+        private long incomeCount;
+        private double net;
+    }
+}
@@ -1,6 +1,6 @@
 package com.budgetwise.filter;
 
-import com.budgetwise.service.CustomUserDetailsService;
+import com.budgetwise.security.PrincipalCache;
 import com.budgetwise.util.JwtUtil;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -10,6 +10,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -20,7 +21,7 @@ import java.io.IOException;
 public class JwtRequestFilter extends OncePerRequestFilter {
 
     @Autowired
-    private CustomUserDetailsService userDetailsService;
+    private PrincipalCache principalCache;
 
     @Autowired
     private JwtUtil jwtUtil;
@@ -31,7 +32,7 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
         final String authorizationHeader = request.getHeader("Authorization");
 
-        String username = null;
+        JwtUtil.VerifiedToken token = null;
         String jwt = null;
 
         if (authorizationHeader != null && !authorizationHeader.isEmpty()) {
@@ -48,17 +49,26 @@ public class JwtRequestFilter extends OncePerRequestFilter {
             }
 
             try {
-                username = jwtUtil.extractUsername(jwt);
+                // Signature and expiry are checked here, once per request
+                token = jwtUtil.verify(jwt);
             } catch (Exception e) {
-                // Invalid token
+                // Invalid or expired token
             }
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+        // Purpose-scoped tokens (password reset) are not session tokens
+        if (token != null && token.purpose() == null
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
 
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+            // Served from memory on the hot path; Mongo is only read on a miss
+            UserDetails userDetails = null;
+            try {
+                userDetails = principalCache.resolve(token.userId(), token.subject());
+            } catch (UsernameNotFoundException e) {
+                // Account no longer exists; continue unauthenticated
+            }
 
-            if (jwtUtil.validateToken(jwt, userDetails)) {
+            if (userDetails != null && token.subject().equals(userDetails.getUsername())) {
 
                 UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
@@ -0,0 +1,20 @@
+package com.budgetwise.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Document(collection = "collection_versions")
+public class CollectionVersion {
+
+    @Id
+    private String id; // userId
+
+    private String epoch; // random per counter document, so a recreated one never reuses old ETags
+
+    private Map<String, Long> versions = new HashMap<>(); // collection name -> change counter
+}
@@ -3,12 +3,15 @@ package com.budgetwise.model;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 
 import java.time.LocalDate;
 
 @Data
 @Document(collection = "expenses")
+@CompoundIndex(name = "user_date_id", def = "{'userId': 1, 'date': -1, '_id': -1}")
+@CompoundIndex(name = "user_category_date", def = "{'userId': 1, 'category': 1, 'date': -1}")
 public class Expense {
 
     @Id
@@ -18,7 +21,7 @@ public class Expense {
     private Double amount;
     private String category;
 
-    private String date; // Storing as String (YYYY-MM-DD) for simplicity with frontend
+    private LocalDate date; // Serialized as YYYY-MM-DD for the frontend, stored as a BSON date
 
     @Indexed
     private String userId; // Reference to owner
@@ -3,6 +3,7 @@ package com.budgetwise.model;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 
 import java.time.LocalDate;
@@ -10,6 +11,7 @@ import java.time.LocalDateTime;
 
 @Data
 @Document(collection = "goals")
+@CompoundIndex(name = "user_created_id", def = "{'userId': 1, 'createdAt': -1, '_id': -1}")
 public class Goal {
 
     @Id
@@ -18,7 +20,7 @@ public class Goal {
     private String title;
     private Double targetAmount;
     private Double currentAmount; // To track progress
-    private String deadline; // YYYY-MM-DD
+    private LocalDate deadline; // YYYY-MM-DD
 
     @Indexed
     private String userId;
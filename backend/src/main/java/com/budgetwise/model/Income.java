@@ -3,12 +3,15 @@ package com.budgetwise.model;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Data
 @Document(collection = "incomes")
+@CompoundIndex(name = "user_date_id", def = "{'userId': 1, 'date': -1, '_id': -1}")
 public class Income {
 
     @Id
@@ -16,7 +19,7 @@ public class Income {
 
     private String source; // e.g. Salary, Freelance
     private Double amount;
-    private String date; // YYYY-MM-DD
+    private LocalDate date; // YYYY-MM-DD
 
     @Indexed
     private String userId;
@@ -0,0 +1,25 @@
+package com.budgetwise.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Document(collection = "merchant_categories")
+public class MerchantCategory {
+
+    @Id
+    private String id; // "<userId>:<normalized merchant>", so upserts never race into duplicates
+
+    @Indexed
+    private String userId;
+    private String merchant; // normalized expense title
+
+    private Map<String, Long> categories = new HashMap<>(); // category -> number of expenses
+    private long count;
+    private double amountTotal;
+}
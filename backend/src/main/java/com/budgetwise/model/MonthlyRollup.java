@@ -0,0 +1,34 @@
+package com.budgetwise.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Document(collection = "monthly_rollups")
+@CompoundIndex(name = "user_month", def = "{'userId': 1, 'month': 1}")
+public class MonthlyRollup {
+
+    @Id
+    private String id; // "<userId>:<YYYY-MM>", so upserts never race into duplicates
+
+    private String userId;
+    private String month; // YYYY-MM
+
+    private double expenseTotal;
+    private long expenseCount;
+    private double incomeTotal;
+    private long incomeCount;
+
+    private Map<String, CategoryTotal> categories = new HashMap<>();
+
+    @Data
+    public static class CategoryTotal {
+        private double total;
+        private long count;
+    }
+}
@@ -15,11 +15,12 @@ public class Otp {
     @Id
     private String id;
 
-    @Indexed
+    @Indexed(name = "identifier_unique", unique = true)
     private String identifier; // Email or Mobile
 
     private String otpCode;
 
+    @Indexed(name = "expiry_ttl", expireAfterSeconds = 0) // Mongo deletes codes once they expire
     private LocalDateTime expiryDate;
 
     public boolean isExpired() {
@@ -0,0 +1,46 @@
+package com.budgetwise.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Document(collection = "email_outbox")
+@CompoundIndex(name = "status_next_attempt", def = "{'status': 1, 'nextAttemptAt': 1}")
+@CompoundIndex(name = "coalesce_status", def = "{'coalesceKey': 1, 'status': 1}", sparse = true)
+public class OutboxEmail {
+
+    public static final String PENDING = "PENDING";
+    public static final String SENDING = "SENDING"; // claimed by a dispatcher until nextAttemptAt
+    public static final String SENT = "SENT";
+    public static final String FAILED = "FAILED";
+    public static final String EXPIRED = "EXPIRED";
+
+    @Id
+    private String id;
+
+    private String to;
+    private String subject;
+    private String body;
+
+    // Digests: later messages with the same key are appended to this one until it is sent
+    private String coalesceKey;
+    private String digestSubject; // used instead of subject once more than one message is folded in
+    private List<String> digest;
+
+    private String status;
+    private int attempts;
+    private Instant nextAttemptAt;
+    private Instant expiresAt; // optional: not worth sending after this (e.g. an OTP)
+    private String lastError;
+
+    private Instant createdAt;
+
+    @Indexed(name = "completed_ttl", expireAfter = "7d")
+    private Instant completedAt; // set once SENT, FAILED or EXPIRED
+}
@@ -0,0 +1,21 @@
+package com.budgetwise.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Data
+@Document(collection = "receipt_scans")
+public class ReceiptScan {
+
+    @Id
+    private String id; // SHA-256 of the uploaded image + prompt version
+
+    private String result; // JSON returned by the AI provider
+
+    @Indexed(name = "created_ttl", expireAfter = "30d")
+    private Instant createdAt;
+}
@@ -1,10 +1,15 @@
 package com.budgetwise.repository;
 
 import com.budgetwise.model.Expense;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import java.time.LocalDate;
 import java.util.List;
 
 public interface ExpenseRepository extends MongoRepository<Expense, String> {
     List<Expense> findByUserId(String userId);
     List<Expense> findByUserIdAndCategory(String userId, String category);
+    List<Expense> findByUserIdAndDateBetween(String userId, Range<LocalDate> dates, Sort sort);
+    List<Expense> findByUserIdAndCategoryAndDateBetween(String userId, String category, Range<LocalDate> dates, Sort sort);
 }
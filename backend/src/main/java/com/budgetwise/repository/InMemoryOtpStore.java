@@ -0,0 +1,99 @@
+package com.budgetwise.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * OTPs in a map, for single-node deployments and local runs (otp.store=memory).
+ * Expired codes are rejected on lookup and reclaimed by a timing wheel: each
+ * code is filed under the first one-second tick at or after its expiry, and
+ * every tick only looks at the slots that have come due, never at the whole map.
+ */
+@Component
+@ConditionalOnProperty(name = "otp.store", havingValue = "memory")
+public class InMemoryOtpStore implements OtpStore {
+
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SLOTS = 512; // one turn is ~8.5 minutes; longer TTLs wait extra turns
+
+    private record Entry(String code, long expiresAtMillis) {
+    }
+
+    private final Map<String, Entry> codes = new ConcurrentHashMap<>();
+    private final List<Queue<String>> wheel = new ArrayList<>(WHEEL_SLOTS);
+    private long lastTick = System.currentTimeMillis() / TICK_MILLIS;
+
+    public InMemoryOtpStore() {
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    @Override
+    public void put(String identifier, String code, Duration ttl) {
+        long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        codes.put(identifier, new Entry(code, expiresAt));
+        wheel.get(slotOf(dueTick(expiresAt))).add(identifier);
+    }
+
+    @Override
+    public boolean consume(String identifier, String code) {
+        Entry entry = codes.get(identifier);
+        if (entry == null || entry.expiresAtMillis() <= System.currentTimeMillis() || code == null
+                || !MessageDigest.isEqual(entry.code().getBytes(StandardCharsets.UTF_8),
+                        code.getBytes(StandardCharsets.UTF_8))) {
+            return false;
+        }
+        return codes.remove(identifier, entry); // false if a concurrent verify got there first
+    }
+
+    public int size() {
+        return codes.size();
+    }
+
+    // Catches up on every slot passed since the last run, so a late tick misses nothing
+    @Scheduled(fixedRate = TICK_MILLIS)
+    public synchronized void tick() {
+        long now = System.currentTimeMillis();
+        long currentTick = now / TICK_MILLIS;
+        for (long tick = lastTick + 1; tick <= currentTick; tick++) {
+            Queue<String> slot = wheel.get(slotOf(tick));
+            for (int pending = slot.size(); pending > 0; pending--) {
+                String identifier = slot.poll();
+                if (identifier == null) {
+                    break;
+                }
+                Entry entry = codes.get(identifier);
+                if (entry == null || slotOf(dueTick(entry.expiresAtMillis())) != slotOf(tick)) {
+                    continue; // consumed, or replaced by a code filed elsewhere
+                }
+                if (entry.expiresAtMillis() <= now) {
+                    codes.remove(identifier, entry);
+                } else {
+                    slot.add(identifier); // expires on a later turn of the wheel
+                }
+            }
+        }
+        lastTick = Math.max(lastTick, currentTick);
+    }
+
+    // Rounded up: by the time this tick runs the code has expired, so it is not re-queued for a whole turn
+    private static long dueTick(long expiresAtMillis) {
+        return (expiresAtMillis + TICK_MILLIS - 1) / TICK_MILLIS;
+    }
+
+    private static int slotOf(long tick) {
+        return (int) (tick % WHEEL_SLOTS);
+    }
+}
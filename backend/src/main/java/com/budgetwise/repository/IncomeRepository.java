@@ -1,9 +1,13 @@
 package com.budgetwise.repository;
 
 import com.budgetwise.model.Income;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import java.time.LocalDate;
 import java.util.List;
 
 public interface IncomeRepository extends MongoRepository<Income, String> {
     List<Income> findByUserId(String userId);
+    List<Income> findByUserIdAndDateBetween(String userId, Range<LocalDate> dates, Sort sort);
 }
@@ -0,0 +1,67 @@
+package com.budgetwise.repository;
+
+import com.budgetwise.dto.PageDto;
+import com.budgetwise.util.PageCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset ("seek") pagination over a user's documents, newest first, ordered by a
+ * sort field and then by id. Each page is a bounded index range scan on
+ * (userId, sortField, _id) no matter how deep the client has paged.
+ */
+@Component
+public class KeysetPager {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    public <T> PageDto.CursorPage<T> fetch(Class<T> type, Criteria scope, String sortField,
+            String cursor, Integer limit,
+            Function<String, Object> keyParser, Function<T, Object> keyOf, Function<T, String> idOf) {
+        int pageSize = clampLimit(limit);
+
+        Query query = new Query(scope);
+        if (cursor != null && !cursor.isEmpty()) {
+            PageCursor position = PageCursor.decode(cursor);
+            Object key = position.getKey().isEmpty() ? null : keyParser.apply(position.getKey());
+            Criteria sameKey = new Criteria().andOperator(
+                    Criteria.where(sortField).is(key),
+                    Criteria.where("id").lt(position.getId()));
+            // Rows without a sort key come last in descending order
+            query.addCriteria(key == null ? sameKey
+                    : new Criteria().orOperator(Criteria.where(sortField).lt(key), sameKey,
+                            Criteria.where(sortField).is(null)));
+        }
+        query.with(Sort.by(Sort.Direction.DESC, sortField, "id"));
+        // Fetch one extra row to learn whether another page exists
+        query.limit(pageSize + 1);
+
+        List<T> rows = mongoTemplate.find(query, type);
+        if (rows.size() <= pageSize) {
+            return new PageDto.CursorPage<>(rows, null);
+        }
+
+        List<T> page = rows.subList(0, pageSize);
+        T last = page.get(pageSize - 1);
+        String next = PageCursor.of(keyOf.apply(last), idOf.apply(last)).encode();
+        return new PageDto.CursorPage<>(page, next);
+    }
+
+    public static int clampLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+}
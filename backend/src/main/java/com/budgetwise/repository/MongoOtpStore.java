@@ -0,0 +1,118 @@
+package com.budgetwise.repository;
+
+import com.budgetwise.model.Otp;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OTPs in the "otps" collection: issuing is one upsert on the unique
+ * identifier index and verifying is one findAndRemove, so a cycle costs two
+ * round trips. A TTL index on expiryDate lets Mongo delete unused codes.
+ */
+@Component
+@ConditionalOnProperty(name = "otp.store", havingValue = "mongo", matchIfMissing = true)
+public class MongoOtpStore implements OtpStore {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoMappingContext mappingContext;
+
+    @Override
+    public void put(String identifier, String code, Duration ttl) {
+        Query query = Query.query(Criteria.where("identifier").is(identifier));
+        Update update = new Update()
+                .set("otpCode", code)
+                .set("expiryDate", LocalDateTime.now().plus(ttl));
+        try {
+            mongoTemplate.upsert(query, update, Otp.class);
+        } catch (DuplicateKeyException e) {
+            // Lost an insert race for the same identifier; the document exists now
+            mongoTemplate.upsert(query, update, Otp.class);
+        }
+    }
+
+    @Override
+    public boolean consume(String identifier, String code) {
+        Query query = Query.query(Criteria.where("identifier").is(identifier)
+                .and("otpCode").is(code)
+                .and("expiryDate").gt(LocalDateTime.now()));
+        return mongoTemplate.findAndRemove(query, Otp.class) != null;
+    }
+
+    /**
+     * Each step is tried on its own, so a unique index that cannot be built
+     * (duplicate identifiers left by the old repository) never keeps the TTL
+     * index from being created; without it unused codes would never expire.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        IndexOperations indexOps = mongoTemplate.indexOps(Otp.class);
+        try {
+            // The old non-unique index on the same key would block the unique one
+            boolean legacy = indexOps.getIndexInfo().stream()
+                    .anyMatch(index -> index.getName().equals("identifier") && !index.isUnique());
+            if (legacy) {
+                indexOps.dropIndex("identifier");
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to drop legacy Otp index 'identifier': " + e.getMessage());
+        }
+
+        for (IndexDefinition index : new MongoPersistentEntityIndexResolver(mappingContext).resolveIndexFor(Otp.class)) {
+            try {
+                indexOps.ensureIndex(index);
+            } catch (Exception e) {
+                if (!Boolean.TRUE.equals(index.getIndexOptions().get("unique"))) {
+                    System.err.println("Failed to ensure Otp index " + index.getIndexKeys() + ": " + e.getMessage());
+                    continue;
+                }
+                try {
+                    System.err.println("Removed " + removeDuplicateIdentifiers()
+                            + " duplicate OTPs before creating the unique identifier index");
+                    indexOps.ensureIndex(index);
+                } catch (Exception retry) {
+                    System.err.println("Failed to ensure Otp index " + index.getIndexKeys() + ": " + retry.getMessage());
+                }
+            }
+        }
+    }
+
+    // Keeps the latest-expiring code per identifier; returns how many were deleted
+    private int removeDuplicateIdentifiers() {
+        Aggregation duplicates = Aggregation.newAggregation(
+                Aggregation.sort(Sort.Direction.DESC, "expiryDate"),
+                Aggregation.group("identifier").push("_id").as("ids").count().as("count"),
+                Aggregation.match(Criteria.where("count").gt(1)));
+        List<Object> stale = new ArrayList<>();
+        for (Document group : mongoTemplate.aggregate(duplicates, Otp.class, Document.class)) {
+            List<?> ids = group.getList("ids", Object.class);
+            stale.addAll(ids.subList(1, ids.size()));
+        }
+        if (!stale.isEmpty()) {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(stale)), Otp.class);
+        }
+        return stale.size();
+    }
+}
@@ -0,0 +1,12 @@
+package com.budgetwise.repository;
+
+import com.budgetwise.model.MonthlyRollup;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import java.util.List;
+
+public interface MonthlyRollupRepository extends MongoRepository<MonthlyRollup, String> {
+    List<MonthlyRollup> findByUserIdAndMonthBetween(String userId, Range<String> months, Sort sort);
+    void deleteByUserId(String userId);
+}
@@ -0,0 +1,18 @@
+package com.budgetwise.repository;
+
+import java.time.Duration;
+
+/**
+ * Where one-time codes live between being sent and being entered. Each
+ * identifier (email or mobile) has at most one live code. The backend is
+ * chosen with otp.store: "mongo" (default, shared by all instances) or
+ * "memory" (single node and local runs; codes are lost on restart).
+ */
+public interface OtpStore {
+
+    // Replaces any code already issued for the identifier
+    void put(String identifier, String code, Duration ttl);
+
+    // Removes and accepts the code if it matches and has not expired; a wrong code leaves it in place
+    boolean consume(String identifier, String code);
+}
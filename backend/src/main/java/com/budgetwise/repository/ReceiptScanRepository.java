@@ -0,0 +1,7 @@
+package com.budgetwise.repository;
+
+import com.budgetwise.model.ReceiptScan;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface ReceiptScanRepository extends MongoRepository<ReceiptScan, String> {
+}
@@ -13,4 +13,20 @@ public interface UserRepository extends MongoRepository<User, String> {
     Optional<User> findByUsername(String username);
 
     Optional<User> findByMobile(String mobile);
+
+    // Single $or query for identifiers that may be either an email or a username
+    Optional<User> findFirstByEmailOrUsername(String email, String username);
+
+    // Closed projection: only _id, email and password are read from the document
+    interface Credentials {
+        String getId();
+
+        String getEmail();
+
+        String getPassword();
+    }
+
+    Optional<Credentials> findCredentialsById(String id);
+
+    Optional<Credentials> findFirstCredentialsByEmailOrUsername(String email, String username);
 }
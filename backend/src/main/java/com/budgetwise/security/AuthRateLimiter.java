@@ -0,0 +1,72 @@
+package com.budgetwise.security;
+
+import com.budgetwise.util.RateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Throttles the unauthenticated auth endpoints (login, OTP, password reset)
+ * before they do any BCrypt or email work. Every attempt must get a token from
+ * two buckets: one per client IP, which is generous so users behind a shared
+ * NAT are not locked out together, and one per account identifier, which is
+ * tight so spreading a credential-stuffing run over many IPs does not help.
+ * Buckets are per action, so a burst of OTP resends does not block logging in.
+ */
+@Component
+public class AuthRateLimiter {
+
+    public static class RateLimitedException extends RuntimeException {
+        private final long retryAfterSeconds;
+
+        public RateLimitedException(long retryAfterSeconds) {
+            super("Too many attempts. Please try again in " + retryAfterSeconds + " seconds.");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    private final RateLimiter byIp;
+    private final RateLimiter byIdentifier;
+
+    @Autowired
+    public AuthRateLimiter(MeterRegistry meterRegistry,
+            @Value("${ratelimit.auth.ip.capacity:30}") int ipCapacity,
+            @Value("${ratelimit.auth.ip.refill-seconds:2}") long ipRefillSeconds,
+            @Value("${ratelimit.auth.identifier.capacity:5}") int identifierCapacity,
+            @Value("${ratelimit.auth.identifier.refill-seconds:60}") long identifierRefillSeconds,
+            @Value("${ratelimit.auth.max-keys:100000}") int maxKeys) {
+        this.byIp = new RateLimiter("auth-ip", ipCapacity, Duration.ofSeconds(ipRefillSeconds), maxKeys,
+                meterRegistry);
+        this.byIdentifier = new RateLimiter("auth-identifier", identifierCapacity,
+                Duration.ofSeconds(identifierRefillSeconds), maxKeys, meterRegistry);
+    }
+
+    /**
+     * Throws RateLimitedException if this client or this identifier has used up
+     * its attempts for the action. The client IP is the request's remote
+     * address, which server.forward-headers-strategy resolves to the client
+     * behind our proxy rather than the proxy itself.
+     */
+    public void check(String action, HttpServletRequest request, String identifier) {
+        RateLimiter.Decision ip = byIp.tryAcquire(action + ":" + request.getRemoteAddr());
+        if (!ip.allowed()) {
+            throw new RateLimitedException(ip.retryAfterSeconds());
+        }
+        if (identifier != null && !identifier.isBlank()) {
+            RateLimiter.Decision account = byIdentifier.tryAcquire(
+                    action + ":" + identifier.strip().toLowerCase(Locale.ROOT));
+            if (!account.allowed()) {
+                throw new RateLimitedException(account.retryAfterSeconds());
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.budgetwise.security;
+
+import org.springframework.security.core.userdetails.User;
+
+import java.util.ArrayList;
+
+/**
+ * Principal placed in the SecurityContext for API requests. Carries the Mongo
+ * user id next to the email so services can scope queries without looking the
+ * user up again.
+ */
+public class AuthenticatedUser extends User {
+
+    private final String userId;
+
+    public AuthenticatedUser(String userId, String email, String password) {
+        super(email, password, new ArrayList<>());
+        this.userId = userId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,184 @@
+package com.budgetwise.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The application's PasswordEncoder: BCrypt, run on the bounded
+ * passwordHashExecutor rather than on the calling request thread. Work that
+ * sat in the queue longer than auth.hashing.max-queue-ms is dropped with
+ * HashingBusyException (the client has likely given up by then), as is work
+ * arriving while the queue is full. Request threads wait at most the queue
+ * limit plus a few hash times, so a stalled pool cannot pin them.
+ *
+ * Unless auth.hashing.cost is set, the cost factor is calibrated at startup
+ * to the highest one whose hash takes at most auth.hashing.target-ms on this
+ * machine (never below auth.hashing.min-cost). Stored hashes with a lower
+ * cost report upgradeEncoding() so callers can rehash them on login.
+ */
+@Component
+public class PasswordHasher implements PasswordEncoder {
+
+    public static class HashingBusyException extends RuntimeException {
+        public HashingBusyException() {
+            super("Server is busy, please try again shortly");
+        }
+    }
+
+    // $2a$10$... -> 10
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
+    private final ThreadPoolTaskExecutor executor;
+    private final long maxQueueNanos;
+    private final long awaitMillis;
+    private final int cost;
+    private final BCryptPasswordEncoder bcrypt;
+
+    private final Timer queueWait;
+    private final Timer encodeTimer;
+    private final Timer verifyTimer;
+    private final Counter rejectedFull;
+    private final Counter rejectedStale;
+    private final Counter rejectedWait;
+
+    @Autowired
+    public PasswordHasher(@Qualifier("passwordHashExecutor") ThreadPoolTaskExecutor executor,
+            MeterRegistry meterRegistry,
+            @Value("${auth.hashing.cost:0}") int configuredCost,
+            @Value("${auth.hashing.target-ms:250}") long targetMillis,
+            @Value("${auth.hashing.min-cost:10}") int minCost,
+            @Value("${auth.hashing.max-cost:14}") int maxCost,
+            @Value("${auth.hashing.max-queue-ms:2000}") long maxQueueMillis) {
+        this.executor = executor;
+        this.maxQueueNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueMillis);
+        this.cost = configuredCost > 0 ? configuredCost : calibrate(targetMillis, minCost, maxCost);
+        this.bcrypt = new BCryptPasswordEncoder(cost);
+        long hashMillis = Math.max(1, timeHash(cost));
+        // Room for the queue limit plus a hash slowed down by other work on the machine
+        this.awaitMillis = maxQueueMillis + Math.max(1000, 4 * hashMillis);
+        System.out.println("Password hashing: bcrypt cost " + cost
+                + (configuredCost > 0 ? " (configured)" : " (calibrated to ~" + targetMillis + " ms)")
+                + ", ~" + hashMillis + " ms per hash, callers wait up to " + awaitMillis + " ms");
+
+        Gauge.builder("auth.hash.cost", this, PasswordHasher::getCost).register(meterRegistry);
+        this.queueWait = Timer.builder("auth.hash.queue.wait")
+                .description("Time hashing work waits for a free hashing thread")
+                .register(meterRegistry);
+        this.encodeTimer = Timer.builder("auth.hash.duration").tag("operation", "encode").register(meterRegistry);
+        this.verifyTimer = Timer.builder("auth.hash.duration").tag("operation", "verify").register(meterRegistry);
+        this.rejectedFull = Counter.builder("auth.hash.rejected").tag("reason", "queue_full").register(meterRegistry);
+        this.rejectedStale = Counter.builder("auth.hash.rejected").tag("reason", "queue_timeout").register(meterRegistry);
+        this.rejectedWait = Counter.builder("auth.hash.rejected").tag("reason", "wait_timeout").register(meterRegistry);
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return await(encodeAsync(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        return await(submit(() -> bcrypt.matches(rawPassword, encodedPassword), verifyTimer));
+    }
+
+    // True for BCrypt hashes made with a lower cost than the current one
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) < cost;
+    }
+
+    // For work nobody waits on (e.g. rehashing after a login)
+    public CompletableFuture<String> encodeAsync(CharSequence rawPassword) {
+        return submit(() -> bcrypt.encode(rawPassword), encodeTimer);
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work, Timer timer) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long waited = System.nanoTime() - queuedAt;
+                queueWait.record(waited, TimeUnit.NANOSECONDS);
+                if (waited > maxQueueNanos) {
+                    rejectedStale.increment();
+                    result.completeExceptionally(new HashingBusyException());
+                    return;
+                }
+                try {
+                    result.complete(timer.record(work));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            rejectedFull.increment();
+            result.completeExceptionally(new HashingBusyException());
+        }
+        return result;
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(awaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HashingBusyException();
+        } catch (TimeoutException e) {
+            rejectedWait.increment();
+            throw new HashingBusyException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Each cost step doubles the work, so step up while the doubled time still fits the target
+    private static int calibrate(long targetMillis, int minCost, int maxCost) {
+        BCrypt.hashpw("calibration", BCrypt.gensalt(minCost)); // warm-up
+        int cost = minCost;
+        long millis = timeHash(cost);
+        while (cost < maxCost && millis * 2 <= targetMillis) {
+            cost++;
+            millis = timeHash(cost);
+        }
+        return cost;
+    }
+
+    private static long timeHash(int cost) {
+        long start = System.nanoTime();
+        BCrypt.hashpw("calibration", BCrypt.gensalt(cost));
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
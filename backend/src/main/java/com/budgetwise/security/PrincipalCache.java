@@ -0,0 +1,49 @@
+package com.budgetwise.security;
+
+import com.budgetwise.service.CustomUserDetailsService;
+import com.budgetwise.util.TtlCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Keeps recently authenticated principals in memory so the JWT filter does not
+ * read the users collection on every request. Entries are dropped when the
+ * account changes (see UserService) and otherwise expire after the TTL, which
+ * also bounds staleness when several instances run side by side.
+ */
+@Component
+public class PrincipalCache {
+
+    private final CustomUserDetailsService userDetailsService;
+    private final TtlCache<String, AuthenticatedUser> cache;
+
+    @Autowired
+    public PrincipalCache(CustomUserDetailsService userDetailsService, MeterRegistry meterRegistry,
+            @Value("${auth.principal-cache.max-size:10000}") int maxSize,
+            @Value("${auth.principal-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userDetailsService = userDetailsService;
+        this.cache = new TtlCache<String, AuthenticatedUser>(maxSize, Duration.ofSeconds(ttlSeconds))
+                .registerMetrics(meterRegistry, "principals");
+    }
+
+    /**
+     * Tokens with a "uid" claim are keyed and loaded by id; older tokens by
+     * their subject (email or username). Unknown accounts are not cached.
+     */
+    public AuthenticatedUser resolve(String userId, String subject) throws UsernameNotFoundException {
+        if (userId != null) {
+            return cache.computeIfAbsent(userId, userDetailsService::loadUserById);
+        }
+        return cache.computeIfAbsent("sub:" + subject, key -> userDetailsService.loadUserByUsername(subject));
+    }
+
+    // Covers both key forms, since the email/username before the change is not needed
+    public void evictUser(String userId) {
+        cache.invalidateIf(principal -> principal.getUserId().equals(userId));
+    }
+}
@@ -1,18 +1,41 @@
 package com.budgetwise.service;
 
+import com.budgetwise.dto.GeminiDto;
+import com.budgetwise.util.ProviderGuard;
+import com.budgetwise.util.TtlCache;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.Flow;
+import java.util.regex.Pattern;
 
 @Service
 public class AIService {
@@ -20,85 +43,135 @@ public class AIService {
     @Value("${openai.api.key}")
     private String apiKey;
 
-    private static final String GEMINI_API_URL = "https://generativelanguage.googleapis.com/v1/models/gemini-2.5-flash-lite:generateContent?key=";
+    // generateContent endpoint; point it at tools/FakeProviderServer.java for offline load tests
+    @Value("${openai.api.url:https://generativelanguage.googleapis.com/v1/models/gemini-2.5-flash-lite:generateContent}")
+    private String apiUrl;
 
-    private final RestTemplate restTemplate;
+    // Part of the receipt scan cache key: bump whenever RECEIPT_PROMPT or the result format changes
+    public static final String RECEIPT_PROMPT_VERSION = "v2";
 
-    public AIService(RestTemplateBuilder restTemplateBuilder) {
-        this.restTemplate = restTemplateBuilder
-                .setConnectTimeout(java.time.Duration.ofSeconds(10))
-                .setReadTimeout(java.time.Duration.ofSeconds(60)) // Give Gemini 60 seconds to respond
-                .build();
-    }
+    private static final String RECEIPT_PROMPT = "Analyze this receipt image and extract the expense details. Return ONLY a valid JSON object with these exact keys: "
+            +
+            "{\"title\": \"<merchant or item name>\", \"amount\": <number>, \"category\": \"<one of: " + String.join(", ", GeminiResponseParser.RECEIPT_CATEGORIES) + ">\", \"date\": \"<YYYY-MM-DD format>\"}. "
+            +
+            "If any field cannot be determined, use sensible defaults: title='Receipt Expense', amount=0, category='General', date=today's date. "
+            +
+            "Do NOT include any explanation, markdown, or additional text. Only output the raw JSON.";
 
-    public String scanReceiptFromBase64(String base64Image, String mimeType) {
-        if (apiKey == null || apiKey.isEmpty()) {
-            return "{\"error\": \"AI Service not configured\"}";
-        }
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
+    // Part of the chat cache key: bump whenever CHAT_SYSTEM_CONTEXT changes
+    public static final String CHAT_PROMPT_VERSION = "v1";
 
-            String prompt = "Analyze this receipt image and extract the expense details. Return ONLY a valid JSON object with these exact keys: "
-                    +
-                    "{\"title\": \"<merchant or item name>\", \"amount\": <number>, \"category\": \"<one of: Food, Travel, Shopping, Utilities, Health, Education, Entertainment, Rent, General>\", \"date\": \"<YYYY-MM-DD format>\"}. "
-                    +
-                    "If any field cannot be determined, use sensible defaults: title='Receipt Expense', amount=0, category='General', date=today's date. "
-                    +
-                    "Do NOT include any explanation, markdown, or additional text. Only output the raw JSON.";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s?!.]+$");
 
-            Map<String, Object> textPart = new HashMap<>();
-            textPart.put("text", prompt);
+    // Strict Context for BudgetWise
+    private static final String CHAT_SYSTEM_CONTEXT = "You are the AI assistant for 'BudgetWise', a personal finance application. " +
+            "Your role is to help users with tracking expenses, setting budgets, and financial advice related to the app. "
+            +
+            "If a user asks about anything unrelated to finance, budgeting, or this application, politely refuse to answer. "
+            +
+            "Keep answers concise and helpful.\n\nUser Question: ";
 
-            Map<String, Object> imageData = new HashMap<>();
-            imageData.put("mime_type", mimeType);
-            imageData.put("data", base64Image);
+    private final RestTemplate restTemplate;
 
-            Map<String, Object> inlineData = new HashMap<>();
-            inlineData.put("inline_data", imageData);
+    // Non-blocking client for streamed generation (see HttpClientConfig): response
+    // lines are pushed to a subscriber as they arrive, so an open stream does not
+    // park a thread
+    private final HttpClient streamingClient;
 
-            List<Map<String, Object>> parts = new ArrayList<>();
-            parts.add(textPart);
-            parts.add(inlineData);
+    // Wait for the streamed response headers, same as the pooled client's read timeout
+    @Value("${outbound.http.read-timeout-seconds:60}")
+    private long readTimeoutSeconds;
 
-            Map<String, Object> content = new HashMap<>();
-            content.put("parts", parts);
+    // Answers to repeated helpdesk questions, keyed by prompt version + normalized message
+    private final TtlCache<String, String> chatCache;
 
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("contents", Collections.singletonList(content));
+    @Autowired
+    private ObjectMapper objectMapper;
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            String url = GEMINI_API_URL + apiKey;
-
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                Map<?, ?> body = response.getBody();
-                if (body.containsKey("candidates")) {
-                    List<?> candidates = (List<?>) body.get("candidates");
-                    if (candidates != null && !candidates.isEmpty()) {
-                        Map<?, ?> candidate = (Map<?, ?>) candidates.get(0);
-                        if (candidate.containsKey("content")) {
-                            Map<?, ?> responseContent = (Map<?, ?>) candidate.get("content");
-                            if (responseContent.containsKey("parts")) {
-                                List<?> responseParts = (List<?>) responseContent.get("parts");
-                                if (responseParts != null && !responseParts.isEmpty()) {
-                                    Map<?, ?> firstPart = (Map<?, ?>) responseParts.get(0);
-                                    String text = (String) firstPart.get("text");
-                                    // Strip any accidental markdown code fences
-                                    text = text.trim().replaceAll("^```json\\s*", "").replaceAll("^```\\s*", "")
-                                            .replaceAll("```\\s*$", "").trim();
-                                    return text;
-                                }
-                            }
-                        }
-                    }
+    @Autowired
+    private GeminiResponseParser geminiResponseParser;
+
+    // Circuit breaker + bulkhead: fail fast instead of queueing behind a slow provider
+    @Autowired
+    @Qualifier("geminiGuard")
+    private ProviderGuard geminiGuard;
+
+    // Shared outbound clients (see HttpClientConfig); the read timeout gives Gemini 60 seconds
+    public AIService(RestTemplate outboundRestTemplate, HttpClient outboundStreamingClient, MeterRegistry meterRegistry,
+            @Value("${helpdesk.chat-cache.max-size:1000}") int chatCacheSize,
+            @Value("${helpdesk.chat-cache.ttl-minutes:60}") long chatCacheTtlMinutes) {
+        this.restTemplate = outboundRestTemplate;
+        this.streamingClient = outboundStreamingClient;
+        this.chatCache = new TtlCache<String, String>(chatCacheSize, Duration.ofMinutes(chatCacheTtlMinutes))
+                .registerMetrics(meterRegistry, "helpdesk-chat");
+    }
+
+    public String scanReceiptImage(byte[] image, String mimeType) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return "{\"error\": \"AI Service not configured\"}";
+        }
+        try {
+            // The image is base64-encoded straight into the request body, never held as a String
+            RequestCallback writeBody = request -> {
+                request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                if (request instanceof StreamingHttpOutputMessage streaming) {
+                    streaming.setBody(out -> writeReceiptRequest(out, image, mimeType));
+                } else {
+                    writeReceiptRequest(request.getBody(), image, mimeType);
                 }
+            };
+            String url = apiUrl + "?key=" + apiKey;
+
+            ResponseEntity<GeminiDto.Response> response = geminiGuard.call(() -> restTemplate.execute(url,
+                    HttpMethod.POST, writeBody, restTemplate.responseEntityExtractor(GeminiDto.Response.class)));
+
+            GeminiDto.Candidate candidate = response.getStatusCode().is2xxSuccessful()
+                    ? geminiResponseParser.firstCandidate(response.getBody(), "receipt")
+                    : null;
+            if (candidate == null) {
+                return "{\"error\": \"Could not parse receipt\"}";
             }
-            return "{\"error\": \"Could not parse receipt\"}";
+            if (candidate.finishReason() != null && !GeminiResponseParser.FINISHED.equals(candidate.finishReason())) {
+                return "{\"error\": \"AI stopped before finishing the receipt (" + candidate.finishReason() + ")\"}";
+            }
+            return geminiResponseParser.receiptJson(candidate.text());
+        } catch (GeminiResponseParser.InvalidReceiptException e) {
+            return "{\"error\": \"" + e.getMessage() + "\"}";
+        } catch (ProviderGuard.ProviderUnavailableException e) {
+            return "{\"error\": \"" + e.getMessage() + "\"}";
         } catch (Exception e) {
             e.printStackTrace();
-            return "{\"error\": \"" + e.getMessage().replace("\"", "'") + "\"}";
+            String message = e.getMessage() != null ? e.getMessage() : "Could not parse receipt";
+            return "{\"error\": \"" + message.replace("\"", "'") + "\"}";
+        }
+    }
+
+    // {"contents": [{"parts": [{"text": prompt}, {"inline_data": {"mime_type": ..., "data": base64}}]}]}
+    private void writeReceiptRequest(OutputStream out, byte[] image, String mimeType) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.writeStartObject();
+            json.writeArrayFieldStart("contents");
+            json.writeStartObject();
+            json.writeArrayFieldStart("parts");
+
+            json.writeStartObject();
+            json.writeStringField("text", RECEIPT_PROMPT);
+            json.writeEndObject();
+
+            json.writeStartObject();
+            json.writeObjectFieldStart("inline_data");
+            json.writeStringField("mime_type", mimeType);
+            json.writeFieldName("data");
+            json.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, image, 0, image.length);
+            json.writeEndObject();
+            json.writeEndObject();
+
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeEndObject();
         }
     }
 
@@ -107,22 +180,20 @@ public class AIService {
             return "AI Service is not configured. Please set a valid API key in application.properties.";
         }
 
+        String cacheKey = chatCacheKey(userMessage);
+        String cached = chatCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
 
-            // Strict Context for BudgetWise
-            String systemContext = "You are the AI assistant for 'BudgetWise', a personal finance application. " +
-                    "Your role is to help users with tracking expenses, setting budgets, and financial advice related to the app. "
-                    +
-                    "If a user asks about anything unrelated to finance, budgeting, or this application, politely refuse to answer. "
-                    +
-                    "Keep answers concise and helpful.\n\nUser Question: ";
-
             Map<String, Object> requestBody = new HashMap<>();
 
             Map<String, Object> part = new HashMap<>();
-            part.put("text", systemContext + userMessage);
+            part.put("text", CHAT_SYSTEM_CONTEXT + userMessage);
 
             Map<String, Object> content = new HashMap<>();
             content.put("parts", Collections.singletonList(part));
@@ -132,34 +203,222 @@ public class AIService {
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
 
             // Use the API key in the URL query parameter for Gemini
-            String url = GEMINI_API_URL + apiKey;
-
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                Map<?, ?> body = response.getBody();
-                if (body.containsKey("candidates")) {
-                    List<?> candidates = (List<?>) body.get("candidates");
-                    if (candidates != null && !candidates.isEmpty()) {
-                        Map<?, ?> candidate = (Map<?, ?>) candidates.get(0);
-                        if (candidate.containsKey("content")) {
-                            Map<?, ?> responseContent = (Map<?, ?>) candidate.get("content");
-                            if (responseContent.containsKey("parts")) {
-                                List<?> parts = (List<?>) responseContent.get("parts");
-                                if (parts != null && !parts.isEmpty()) {
-                                    Map<?, ?> firstPart = (Map<?, ?>) parts.get(0);
-                                    return (String) firstPart.get("text");
-                                }
-                            }
-                        }
-                    }
+            String url = apiUrl + "?key=" + apiKey;
+
+            ResponseEntity<GeminiDto.Response> response = geminiGuard.call(
+                    () -> restTemplate.postForEntity(url, entity, GeminiDto.Response.class));
+
+            GeminiDto.Candidate candidate = response.getStatusCode().is2xxSuccessful()
+                    ? geminiResponseParser.firstCandidate(response.getBody(), "chat")
+                    : null;
+            String text = candidate != null ? candidate.text() : null;
+            if (text != null) {
+                // only complete answers are cached, not ones cut short by token limits or filters
+                if (candidate.finishReason() == null || GeminiResponseParser.FINISHED.equals(candidate.finishReason())) {
+                    chatCache.put(cacheKey, text);
                 }
+                return text;
             }
             return "No response from AI provider.";
 
+        } catch (ProviderGuard.ProviderUnavailableException e) {
+            return e.getMessage();
         } catch (Exception e) {
             e.printStackTrace();
             return "Error communicating with AI service: " + e.getMessage();
         }
     }
+
+    // "How do I add a category?" and "how do i  add a category" share an entry
+    private static String chatCacheKey(String message) {
+        String normalized = message == null ? "" : message.strip().toLowerCase(Locale.ROOT);
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ");
+        normalized = TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+        return CHAT_PROMPT_VERSION + ":" + normalized;
+    }
+
+    /**
+     * Streams the helpdesk answer as server-sent events: "delta" events carry
+     * {"text": ...} fragments as Gemini produces them, then a single "done"
+     * (or "error") event. Cached answers are replayed as one delta.
+     */
+    public SseEmitter streamChatResponse(String userMessage) {
+        SseEmitter emitter = new SseEmitter();
+        if (apiKey == null || apiKey.isEmpty() || apiKey.equals("your-api-key-here")) {
+            sendFinal(emitter, "error", "AI Service is not configured. Please set a valid API key in application.properties.");
+            return emitter;
+        }
+
+        String cacheKey = chatCacheKey(userMessage);
+        String cached = chatCache.get(cacheKey);
+        if (cached != null) {
+            try {
+                emitter.send(SseEmitter.event().name("delta").data(Map.of("text", cached)));
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+                return emitter;
+            }
+            sendFinal(emitter, "done", null);
+            return emitter;
+        }
+
+        byte[] requestBody;
+        try {
+            requestBody = objectMapper.writeValueAsBytes(Map.of("contents", List.of(
+                    Map.of("parts", List.of(Map.of("text", CHAT_SYSTEM_CONTEXT + userMessage))))));
+        } catch (IOException e) {
+            sendFinal(emitter, "error", "Error communicating with AI service: " + e.getMessage());
+            return emitter;
+        }
+        String streamUrl = apiUrl.replace(":generateContent", ":streamGenerateContent") + "?alt=sse&key=" + apiKey;
+        HttpRequest request = HttpRequest.newBuilder(URI.create(streamUrl))
+                .timeout(Duration.ofSeconds(readTimeoutSeconds)) // until the response headers arrive
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
+                .build();
+
+        // The bulkhead slot is held until the stream ends, not just until the headers arrive
+        ProviderGuard.Permit permit;
+        try {
+            permit = geminiGuard.acquire();
+        } catch (ProviderGuard.ProviderUnavailableException e) {
+            sendFinal(emitter, "error", e.getMessage());
+            return emitter;
+        }
+
+        ChatStreamRelay relay = new ChatStreamRelay(emitter, cacheKey, permit);
+        emitter.onCompletion(relay::cancel);
+        emitter.onTimeout(relay::cancel);
+        emitter.onError(e -> relay.cancel());
+
+        streamingClient.sendAsync(request, info -> info.statusCode() == 200
+                ? HttpResponse.BodySubscribers.fromLineSubscriber(relay)
+                : HttpResponse.BodySubscribers.discarding())
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        permit.failure(error);
+                        relay.fail("Error communicating with AI service: " + error.getMessage());
+                    } else if (response.statusCode() != 200) {
+                        int status = response.statusCode();
+                        if (status >= 500 || status == 429) {
+                            permit.failure(new IllegalStateException("HTTP " + status));
+                        } else {
+                            permit.success(); // our request was bad; the provider is fine
+                        }
+                        relay.fail("AI provider returned status " + status);
+                    } else {
+                        permit.success();
+                    }
+                });
+        return emitter;
+    }
+
+    private void sendFinal(SseEmitter emitter, String event, String message) {
+        try {
+            emitter.send(SseEmitter.event().name(event)
+                    .data(message != null ? Map.of("message", message) : Map.of()));
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * Relays Gemini's SSE lines ("data: {...}") to the browser and caches the full
+     * answer. The relay settles the bulkhead permit itself: once the line
+     * subscription is cancelled the JDK never completes the sendAsync future, so
+     * its whenComplete cannot be relied on to give the slot back.
+     */
+    private class ChatStreamRelay implements Flow.Subscriber<String> {
+
+        private final SseEmitter emitter;
+        private final String cacheKey;
+        private final ProviderGuard.Permit permit;
+        private final StringBuilder answer = new StringBuilder();
+        private volatile String finishReason;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean closed;
+
+        private ChatStreamRelay(SseEmitter emitter, String cacheKey, ProviderGuard.Permit permit) {
+            this.emitter = emitter;
+            this.cacheKey = cacheKey;
+            this.permit = permit;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (closed) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (closed || !line.startsWith("data:")) {
+                return;
+            }
+            GeminiDto.Candidate candidate = geminiResponseParser.chunk(line.substring(5).trim(), "chat");
+            if (candidate == null) {
+                return;
+            }
+            if (candidate.finishReason() != null) {
+                finishReason = candidate.finishReason();
+            }
+            String text = candidate.text();
+            if (text == null || text.isEmpty()) {
+                return;
+            }
+            answer.append(text);
+            try {
+                emitter.send(SseEmitter.event().name("delta").data(Map.of("text", text)));
+            } catch (Exception e) {
+                cancel(); // the browser went away
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            permit.failure(throwable);
+            fail("Error communicating with AI service: " + throwable.getMessage());
+        }
+
+        @Override
+        public void onComplete() {
+            permit.success();
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (answer.length() > 0) {
+                // as in getChatResponse, answers cut short (MAX_TOKENS, SAFETY...) are not cached
+                if (GeminiResponseParser.FINISHED.equals(finishReason)) {
+                    chatCache.put(cacheKey, answer.toString());
+                }
+                sendFinal(emitter, "done", null);
+            } else {
+                sendFinal(emitter, "error", "No response from AI provider.");
+            }
+        }
+
+        private void fail(String message) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            sendFinal(emitter, "error", message);
+        }
+
+        // Browser disconnected or the emitter timed out: stop reading and free the slot
+        private void cancel() {
+            closed = true;
+            permit.abandon();
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
 }
@@ -1,9 +1,7 @@
 package com.budgetwise.service;
 
 import com.budgetwise.model.Category;
-import com.budgetwise.model.User;
 import com.budgetwise.repository.CategoryRepository;
-import com.budgetwise.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -18,57 +16,56 @@ public class CategoryService {
     private CategoryRepository categoryRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private VersionService versionService;
 
     private static final List<String> DEFAULT_CATEGORIES = Arrays.asList(
             "Food", "Rent", "Travel", "Shopping", "Utilities", "Health", "Education", "Entertainment");
 
-    public List<String> getAllCategories(String username) {
-        User user = userRepository.findByEmail(username)
-                .or(() -> userRepository.findByUsername(username))
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    public String getCategoriesEtag(String userId) {
+        return versionService.etag(userId, VersionService.CATEGORIES);
+    }
 
-        List<Category> userCategories = categoryRepository.findByUserId(user.getId());
+    public List<String> getAllCategories(String userId) {
+        List<Category> userCategories = categoryRepository.findByUserId(userId);
 
         // Lazy Migration: If user has NO categories, initialize defaults
         if (userCategories.isEmpty()) {
-            initDefaultCategories(user);
-            userCategories = categoryRepository.findByUserId(user.getId());
+            initDefaultCategories(userId);
+            userCategories = categoryRepository.findByUserId(userId);
         }
 
         return userCategories.stream().map(Category::getName).collect(Collectors.toList());
     }
 
-    public void initDefaultCategories(User user) {
+    public void initDefaultCategories(String userId) {
+        boolean added = false;
         for (String catName : DEFAULT_CATEGORIES) {
             // Check to avoid duplicates if partially initialized
-            if (categoryRepository.findByNameAndUserId(catName, user.getId()).isEmpty()) {
-                categoryRepository.save(new Category(catName, user.getId()));
+            if (categoryRepository.findByNameAndUserId(catName, userId).isEmpty()) {
+                categoryRepository.save(new Category(catName, userId));
+                added = true;
             }
         }
+        if (added) {
+            versionService.bump(userId, VersionService.CATEGORIES);
+        }
     }
 
-    public void addCategory(String username, String categoryName) {
-        User user = userRepository.findByEmail(username)
-                .or(() -> userRepository.findByUsername(username))
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        if (categoryRepository.findByNameAndUserId(categoryName, user.getId()).isPresent()) {
+    public void addCategory(String userId, String categoryName) {
+        if (categoryRepository.findByNameAndUserId(categoryName, userId).isPresent()) {
             throw new RuntimeException("Category already exists");
         }
 
-        Category category = new Category(categoryName, user.getId());
+        Category category = new Category(categoryName, userId);
         categoryRepository.save(category);
+        versionService.bump(userId, VersionService.CATEGORIES);
     }
 
-    public void deleteCategory(String username, String categoryName) {
-        User user = userRepository.findByEmail(username)
-                .or(() -> userRepository.findByUsername(username))
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        Category category = categoryRepository.findByNameAndUserId(categoryName, user.getId())
+    public void deleteCategory(String userId, String categoryName) {
+        Category category = categoryRepository.findByNameAndUserId(categoryName, userId)
                 .orElseThrow(() -> new RuntimeException("Category not found"));
 
         categoryRepository.delete(category);
+        versionService.bump(userId, VersionService.CATEGORIES);
     }
 }
@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -21,6 +22,10 @@ public class ComplaintService {
     @Value("${resend.from.email}")
     private String adminEmail; // Sending to self/admin
 
+    // Admin notifications arriving within this window go out as one digest (0 = one email each)
+    @Value("${email.coalesce.admin-window-seconds:60}")
+    private long adminDigestWindowSeconds;
+
     public Complaint createComplaint(String userId, String userEmail, String subject, String description) {
         Complaint complaint = new Complaint();
         complaint.setUserId(userId);
@@ -34,8 +39,10 @@ public class ComplaintService {
 
         // Notify Admin
         String adminSubject = "New CRM Complaint: " + subject;
-        String adminBody = "User: " + userEmail + "\nID: " + userId + "\n\nDescription:\n" + description;
-        emailService.sendSimpleEmail(adminEmail, adminSubject, adminBody);
+        String adminBody = "Subject: " + subject + "\nUser: " + userEmail + "\nID: " + userId
+                + "\n\nDescription:\n" + description;
+        emailService.sendCoalescedEmail(adminEmail, adminSubject, adminBody, "New CRM Complaints",
+                Duration.ofSeconds(adminDigestWindowSeconds));
 
         // Notify User
         String userSubject = "Complaint Received: " + subject;
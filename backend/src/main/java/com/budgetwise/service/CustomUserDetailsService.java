@@ -1,14 +1,12 @@
 package com.budgetwise.service;
 
-import com.budgetwise.model.User;
 import com.budgetwise.repository.UserRepository;
+import com.budgetwise.security.AuthenticatedUser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
@@ -17,14 +15,23 @@ public class CustomUserDetailsService implements UserDetailsService {
     private UserRepository userRepository;
 
     @Override
-    public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        // Can login with email or username, here we assume the login payload is mapped to 'email' field in principal
-        // Actually the previous system allowed email OR username.
-        // We should check both.
-        User user = userRepository.findByEmail(email)
-                .or(() -> userRepository.findByUsername(email))
+    public AuthenticatedUser loadUserByUsername(String email) throws UsernameNotFoundException {
+        // Can login with email or username, so match either in one query
+        UserRepository.Credentials user = userRepository.findFirstCredentialsByEmailOrUsername(email, email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email/username: " + email));
 
-        return new org.springframework.security.core.userdetails.User(user.getEmail(), user.getPassword(), new ArrayList<>());
+        return toPrincipal(user);
+    }
+
+    // Used for tokens that carry the user id ("uid" claim): a primary-key lookup
+    public AuthenticatedUser loadUserById(String userId) throws UsernameNotFoundException {
+        UserRepository.Credentials user = userRepository.findCredentialsById(userId)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + userId));
+
+        return toPrincipal(user);
+    }
+
+    private AuthenticatedUser toPrincipal(UserRepository.Credentials user) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getPassword());
     }
 }
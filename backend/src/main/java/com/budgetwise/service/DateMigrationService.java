@@ -0,0 +1,91 @@
+package com.budgetwise.service;
+
+import com.budgetwise.config.MongoConfig;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * One-off, restartable migration of string dates ("YYYY-MM-DD") to BSON dates.
+ * Documents are streamed from a cursor and rewritten in bulk batches, so memory
+ * stays flat however large the collections are. Already-converted documents no
+ * longer match the filter, which makes re-running it a no-op.
+ */
+@Service
+public class DateMigrationService {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${migration.typed-dates.enabled:true}")
+    private boolean enabled;
+
+    @Order(0) // before anything that reads typed dates, e.g. the rollup rebuild
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        migrate("expenses", "date");
+        migrate("incomes", "date");
+        migrate("goals", "deadline");
+    }
+
+    public long migrate(String collection, String field) {
+        Query query = new Query(Criteria.where(field).type(JsonSchemaObject.Type.STRING));
+        query.fields().include(field);
+        query.cursorBatchSize(BATCH_SIZE);
+
+        long converted = 0;
+        int pending = 0;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+
+        try (Stream<Document> documents = mongoTemplate.stream(query, Document.class, collection)) {
+            Iterator<Document> it = documents.iterator();
+            while (it.hasNext()) {
+                Document document = it.next();
+                LocalDate date = MongoConfig.parseLegacyDate(document.getString(field));
+                Update update = date != null
+                        ? new Update().set(field, mongoTemplate.getConverter().convertToMongoType(date))
+                        : new Update().unset(field);
+                bulk.updateOne(Query.query(Criteria.where("_id").is(document.get("_id"))), update);
+
+                if (++pending == BATCH_SIZE) {
+                    bulk.execute();
+                    converted += pending;
+                    pending = 0;
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+                }
+            }
+            if (pending > 0) {
+                bulk.execute();
+                converted += pending;
+            }
+        } catch (Exception e) {
+            System.err.println("Date migration of " + collection + "." + field + " stopped after "
+                    + converted + " documents: " + e.getMessage());
+            return converted;
+        }
+
+        if (converted > 0) {
+            System.out.println("Migrated " + converted + " " + collection + "." + field + " values to dates.");
+        }
+        return converted;
+    }
+}
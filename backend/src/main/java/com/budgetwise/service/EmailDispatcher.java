@@ -0,0 +1,275 @@
+package com.budgetwise.service;
+
+import com.budgetwise.model.OutboxEmail;
+import com.budgetwise.util.ProviderGuard;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers queued emails (see EmailService). Every poll claims due messages
+ * one findAndModify at a time, so several app instances can dispatch from the
+ * same outbox without sending a message twice. A claim is a lease: if the
+ * instance dies mid-send, the message becomes due again once it runs out.
+ *
+ * Claimed messages go out as one Resend batch request. Non-urgent mail is
+ * queued up to email.batch.max-delay-ms in the future; whenever something is
+ * due (or a full batch is waiting), not-yet-due mail is pulled forward to fill
+ * the batch, so a burst of messages costs a few requests instead of one each.
+ * Digests (see EmailService.sendCoalescedEmail) are never pulled forward.
+ *
+ * Failed sends are retried with exponential backoff and jitter, up to
+ * email.outbox.max-attempts. Rejections that retrying cannot fix (4xx other
+ * than 429) fail immediately; a rejected batch is retried message by message
+ * so one bad address does not hold up the rest.
+ */
+@Component
+public class EmailDispatcher {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private EmailService emailService;
+
+    private static final int PROVIDER_BATCH_LIMIT = 100;
+
+    @Value("${email.batch.max-size:50}")
+    private int maxBatchSize;
+
+    @Value("${email.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${email.outbox.initial-backoff-ms:2000}")
+    private long initialBackoffMs;
+
+    @Value("${email.outbox.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    // Must outlast one send attempt, or another instance could re-claim and resend it
+    @Value("${email.outbox.lease-seconds:180}")
+    private long leaseSeconds;
+
+    // The limits of one provider request (see HttpClientConfig, ResilienceConfig)
+    @Value("${outbound.http.connect-timeout-seconds:10}")
+    private long connectTimeoutSeconds;
+
+    @Value("${outbound.http.read-timeout-seconds:60}")
+    private long readTimeoutSeconds;
+
+    @Value("${outbound.http.pool-wait-seconds:5}")
+    private long poolWaitSeconds;
+
+    @Value("${resilience.resend.bulkhead-wait-ms:0}")
+    private long bulkheadWaitMs;
+
+    private final MeterRegistry meterRegistry;
+    private final Timer deliveryDelay;
+
+    public EmailDispatcher(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.deliveryDelay = Timer.builder("email.outbox.delay")
+                .description("Time from enqueueing an email to the provider accepting it")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void checkLease() {
+        long worstCaseSend = TimeUnit.MILLISECONDS.toSeconds(bulkheadWaitMs + 999) + poolWaitSeconds
+                + connectTimeoutSeconds + readTimeoutSeconds;
+        if (leaseSeconds <= worstCaseSend) {
+            long raised = 2 * worstCaseSend;
+            System.err.println("email.outbox.lease-seconds=" + leaseSeconds + " does not outlast one send attempt ("
+                    + worstCaseSend + " s); using " + raised + " s");
+            leaseSeconds = raised;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        int batchSize = Math.min(maxBatchSize, PROVIDER_BATCH_LIMIT);
+        List<OutboxEmail> batch;
+        do {
+            batch = claimBatch(batchSize);
+            if (!send(batch)) {
+                return;
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    private List<OutboxEmail> claimBatch(int batchSize) {
+        List<OutboxEmail> batch = new ArrayList<>();
+        try {
+            OutboxEmail email;
+            while (batch.size() < batchSize && (email = claim(Criteria.where("status")
+                    .in(OutboxEmail.PENDING, OutboxEmail.SENDING)
+                    .and("nextAttemptAt").lte(Instant.now()))) != null) {
+                batch.add(email);
+            }
+
+            Criteria early = Criteria.where("status").is(OutboxEmail.PENDING).and("coalesceKey").exists(false);
+            if (batch.isEmpty() && mongoTemplate.count(Query.query(early).limit(batchSize), OutboxEmail.class) < batchSize) {
+                return batch; // nothing due and no full batch waiting yet
+            }
+            while (batch.size() < batchSize && (email = claim(early)) != null) {
+                batch.add(email);
+            }
+        } catch (Exception e) {
+            System.err.println("Email outbox poll failed: " + e.getMessage());
+        }
+        return batch;
+    }
+
+    // Leases the longest-waiting match, or returns null if there is none
+    private OutboxEmail claim(Criteria criteria) {
+        Query query = Query.query(criteria).with(Sort.by("nextAttemptAt"));
+        Update lease = new Update()
+                .set("status", OutboxEmail.SENDING)
+                .set("nextAttemptAt", Instant.now().plusSeconds(leaseSeconds));
+        return mongoTemplate.findAndModify(query, lease, FindAndModifyOptions.options().returnNew(true),
+                OutboxEmail.class);
+    }
+
+    // Returns false if the provider's circuit breaker is open
+    private boolean send(List<OutboxEmail> claimed) {
+        Instant now = Instant.now();
+        List<OutboxEmail> batch = new ArrayList<>();
+        for (OutboxEmail email : claimed) {
+            if (email.getExpiresAt() != null && now.isAfter(email.getExpiresAt())) {
+                complete(email, OutboxEmail.EXPIRED, email.getAttempts(), "Expired before it could be sent");
+            } else {
+                batch.add(email);
+            }
+        }
+        if (batch.size() <= 1) {
+            return batch.isEmpty() || send(batch.get(0));
+        }
+
+        try {
+            emailService.deliverBatch(batch);
+        } catch (Exception e) {
+            if (e.getCause() instanceof ProviderGuard.ProviderUnavailableException) {
+                batch.forEach(this::release);
+                return false;
+            }
+            if (isPermanent(e)) {
+                // Most likely one bad message; find it by sending them one at a time
+                for (int i = 0; i < batch.size(); i++) {
+                    // The lease was sized for one request, and the earlier ones have used it up
+                    renewLease(batch.get(i));
+                    if (!send(batch.get(i))) {
+                        // The provider is shedding load: hand the rest back untouched
+                        batch.subList(i + 1, batch.size()).forEach(this::release);
+                        return false;
+                    }
+                }
+                return true;
+            }
+            batch.forEach(email -> retryOrFail(email, e));
+            return true;
+        }
+        batch.forEach(this::sent);
+        return true;
+    }
+
+    private boolean send(OutboxEmail email) {
+        try {
+            emailService.deliver(email);
+        } catch (Exception e) {
+            if (e.getCause() instanceof ProviderGuard.ProviderUnavailableException) {
+                release(email);
+                return false;
+            }
+            retryOrFail(email, e);
+            return true;
+        }
+        sent(email);
+        return true;
+    }
+
+    private void sent(OutboxEmail email) {
+        complete(email, OutboxEmail.SENT, email.getAttempts() + 1, null);
+        if (email.getCreatedAt() != null) {
+            deliveryDelay.record(Duration.between(email.getCreatedAt(), Instant.now()));
+        }
+    }
+
+    private static boolean isPermanent(Exception e) {
+        return e.getCause() instanceof HttpClientErrorException clientError
+                && clientError.getStatusCode() != HttpStatus.TOO_MANY_REQUESTS;
+    }
+
+    private void retryOrFail(OutboxEmail email, Exception e) {
+        int attempts = email.getAttempts() + 1;
+        String error = e.getMessage();
+        boolean permanent = isPermanent(e);
+        if (permanent || attempts >= maxAttempts) {
+            complete(email, OutboxEmail.FAILED, attempts, error);
+            return;
+        }
+        long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempts - 1, 20));
+        long jittered = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        update(email, new Update()
+                .set("status", OutboxEmail.PENDING)
+                .set("attempts", attempts)
+                .set("lastError", error)
+                .set("nextAttemptAt", Instant.now().plusMillis(jittered)));
+        count("retry");
+    }
+
+    private void renewLease(OutboxEmail email) {
+        update(email, new Update().set("nextAttemptAt", Instant.now().plusSeconds(leaseSeconds)));
+    }
+
+    // Back to the queue without using up an attempt
+    private void release(OutboxEmail email) {
+        update(email, new Update()
+                .set("status", OutboxEmail.PENDING)
+                .set("nextAttemptAt", Instant.now().plusMillis(initialBackoffMs)));
+    }
+
+    private void complete(OutboxEmail email, String status, int attempts, String error) {
+        update(email, new Update()
+                .set("status", status)
+                .set("attempts", attempts)
+                .set("lastError", error)
+                .set("completedAt", Instant.now()));
+        count(status.toLowerCase(Locale.ROOT));
+        if (OutboxEmail.FAILED.equals(status)) {
+            System.err.println("Giving up on email to " + email.getTo() + ": " + error);
+        }
+    }
+
+    private void update(OutboxEmail email, Update update) {
+        try {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(email.getId())), update, OutboxEmail.class);
+        } catch (Exception e) {
+            // The lease runs out and the message is picked up again
+            System.err.println("Failed to update outbox email " + email.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("email.outbox.deliveries", "result", result).increment();
+    }
+}
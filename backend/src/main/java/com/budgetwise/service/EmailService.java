@@ -1,6 +1,16 @@
 package com.budgetwise.service;
 
+import com.budgetwise.model.OutboxEmail;
+import com.budgetwise.util.ProviderGuard;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.HttpHeaders;
@@ -8,6 +18,8 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,41 +33,136 @@ public class EmailService {
     @Value("${resend.from.email}")
     private String fromEmail;
 
-    private final String RESEND_API_URL = "https://api.resend.com/emails";
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Value("${resend.api.url:https://api.resend.com/emails}")
+    private String resendApiUrl;
 
+    // Up to 100 messages per request; all are accepted or none is
+    @Value("${resend.api.batch-url:https://api.resend.com/emails/batch}")
+    private String resendBatchUrl;
+
+    // How long a non-urgent message may wait for others to share a batch request
+    @Value("${email.batch.max-delay-ms:2000}")
+    private long batchMaxDelayMs;
+
+    // Shared pooled client with timeouts (see HttpClientConfig)
+    @Autowired
+    private RestTemplate restTemplate;
+
+    // Circuit breaker + bulkhead: while Resend is failing, sends fail fast
+    @Autowired
+    @Qualifier("resendGuard")
+    private ProviderGuard resendGuard;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // OTPs are sent at once (and pull queued mail along into the same batch)
     public void sendOtpEmail(String toEmail, String otp) {
         String subject = "BudgetWise Verification OTP";
         String body = "Your OTP for BudgetWise verification is: " + otp + "\n\nThis OTP is valid for 5 minutes.";
-        sendResendEmail(toEmail, subject, body);
+        Instant now = Instant.now();
+        enqueue(newEmail(toEmail, subject, body, now), now.plus(Duration.ofMinutes(5)));
     }
 
     public void sendSimpleEmail(String toEmail, String subject, String body) {
-        sendResendEmail(toEmail, subject, body);
+        enqueue(newEmail(toEmail, subject, body, Instant.now().plusMillis(batchMaxDelayMs)), null);
+    }
+
+    /**
+     * Like sendSimpleEmail, but messages to the same address with the same
+     * digestSubject that arrive within the window are folded into one email,
+     * sent when the window closes. A message that ends up alone keeps its own
+     * subject; otherwise the digest is titled "digestSubject (n)".
+     */
+    public void sendCoalescedEmail(String toEmail, String subject, String body, String digestSubject,
+            Duration window) {
+        if (window.isZero() || window.isNegative()) {
+            sendSimpleEmail(toEmail, subject, body);
+            return;
+        }
+        String key = toEmail + "|" + digestSubject;
+        // Only a digest nobody has claimed yet can still take messages
+        Query open = Query.query(Criteria.where("coalesceKey").is(key).and("status").is(OutboxEmail.PENDING));
+        OutboxEmail existing = mongoTemplate.findAndModify(open, new Update().push("digest", body),
+                FindAndModifyOptions.options().returnNew(true), OutboxEmail.class);
+        if (existing != null) {
+            return;
+        }
+        OutboxEmail email = newEmail(toEmail, subject, body, Instant.now().plus(window));
+        email.setCoalesceKey(key);
+        email.setDigestSubject(digestSubject);
+        email.setDigest(List.of(body));
+        enqueue(email, null);
+    }
+
+    private static OutboxEmail newEmail(String toEmail, String subject, String body, Instant sendAt) {
+        OutboxEmail email = new OutboxEmail();
+        email.setTo(toEmail);
+        email.setSubject(subject);
+        email.setBody(body);
+        email.setNextAttemptAt(sendAt);
+        return email;
+    }
+
+    /**
+     * Queues the message in the email_outbox collection and returns; EmailDispatcher
+     * delivers it in the background. Only a failure to store the message is
+     * reported to the caller.
+     */
+    private void enqueue(OutboxEmail email, Instant expiresAt) {
+        email.setStatus(OutboxEmail.PENDING);
+        email.setExpiresAt(expiresAt);
+        email.setCreatedAt(Instant.now());
+        mongoTemplate.insert(email);
     }
 
-    private void sendResendEmail(String toEmail, String subject, String body) {
+    // Sends one message through Resend right away; throws if it was not accepted
+    void deliver(OutboxEmail email) {
+        post(resendApiUrl, payload(email), email.getTo(), "single");
+    }
+
+    // Sends several messages in one request; throws if the batch was not accepted
+    void deliverBatch(List<OutboxEmail> emails) {
+        meterRegistry.summary("email.provider.batch.size").record(emails.size());
+        post(resendBatchUrl, emails.stream().map(this::payload).toList(), emails.size() + " recipients", "batch");
+    }
+
+    private Map<String, Object> payload(OutboxEmail email) {
+        String subject = email.getSubject();
+        String body = email.getBody();
+        if (email.getDigest() != null && email.getDigest().size() > 1) {
+            subject = email.getDigestSubject() + " (" + email.getDigest().size() + ")";
+            body = String.join("\n\n----------------------------------------\n\n", email.getDigest());
+        }
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("from", fromEmail);
+        requestBody.put("to", List.of(email.getTo()));
+        requestBody.put("subject", subject);
+        requestBody.put("text", body);
+        return requestBody;
+    }
+
+    private void post(String url, Object requestBody, String recipient, String type) {
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             headers.setBearerAuth(resendApiKey);
 
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("from", fromEmail);
-            requestBody.put("to", List.of(toEmail));
-            requestBody.put("subject", subject);
-            requestBody.put("text", body);
-
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+            HttpEntity<Object> request = new HttpEntity<>(requestBody, headers);
 
-            ResponseEntity<String> response = restTemplate.postForEntity(RESEND_API_URL, request, String.class);
+            meterRegistry.counter("email.provider.requests", "type", type).increment();
+            ResponseEntity<String> response = resendGuard.call(
+                    () -> restTemplate.postForEntity(url, request, String.class));
 
             if (!response.getStatusCode().is2xxSuccessful()) {
                 throw new RuntimeException("HTTP Server returned error: " + response.getStatusCode());
             }
 
         } catch (Exception e) {
-            System.err.println("Failed to send HTTP email to " + toEmail + ": " + e.getMessage());
+            System.err.println("Failed to send HTTP email to " + recipient + ": " + e.getMessage());
             throw new RuntimeException("Email delivery failed: " + e.getMessage(), e);
         }
     }
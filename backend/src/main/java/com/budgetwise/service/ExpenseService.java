@@ -1,68 +1,372 @@
 package com.budgetwise.service;
 
+import com.budgetwise.dto.BatchDto;
+import com.budgetwise.dto.PageDto;
+import com.budgetwise.dto.SummaryDto;
 import com.budgetwise.model.Expense;
-import com.budgetwise.model.User;
 import com.budgetwise.repository.ExpenseRepository;
-import com.budgetwise.repository.UserRepository;
+import com.budgetwise.repository.KeysetPager;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Service
 public class ExpenseService {
 
+    private static final int EXPORT_BATCH_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 500;
+
     @Autowired
     private ExpenseRepository expenseRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private KeysetPager keysetPager;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private MerchantCategoryService merchantCategoryService;
+
+    @Autowired
+    private VersionService versionService;
+
+    public String getExpensesEtag(String userId) {
+        return versionService.etag(userId, VersionService.EXPENSES);
+    }
+
+    public List<Expense> getAllExpenses(String userId) {
+        return expenseRepository.findByUserId(userId);
+    }
+
+    public List<Expense> getExpensesInRange(String userId, String category, LocalDate from, LocalDate to) {
+        Range<LocalDate> dates = Range.of(
+                from != null ? Range.Bound.inclusive(from) : Range.Bound.unbounded(),
+                to != null ? Range.Bound.inclusive(to) : Range.Bound.unbounded());
+        Sort sort = Sort.by(Sort.Direction.DESC, "date", "id");
+        if (category != null && !category.isEmpty()) {
+            return expenseRepository.findByUserIdAndCategoryAndDateBetween(userId, category, dates, sort);
+        }
+        return expenseRepository.findByUserIdAndDateBetween(userId, dates, sort);
+    }
+
+    public PageDto.CursorPage<Expense> getExpensesPage(String userId, String category, LocalDate from,
+            LocalDate to, String cursor, Integer limit) {
+        return keysetPager.fetch(Expense.class, scope(userId, category, from, to), "date",
+                cursor, limit, LocalDate::parse, Expense::getDate, Expense::getId);
+    }
+
+    /**
+     * Opens a server-side cursor over the matching expenses, newest first. Rows are
+     * fetched in batches as the stream is consumed, so callers can export any
+     * number of them in constant memory. The caller must close the stream.
+     */
+    public Stream<Expense> streamExpenses(String userId, String category, LocalDate from, LocalDate to) {
+        Query query = new Query(scope(userId, category, from, to))
+                .with(Sort.by(Sort.Direction.DESC, "date", "id"))
+                .cursorBatchSize(EXPORT_BATCH_SIZE);
+        return mongoTemplate.stream(query, Expense.class);
+    }
+
+    private static Criteria scope(String userId, String category, LocalDate from, LocalDate to) {
+        Criteria scope = Criteria.where("userId").is(userId);
+        if (category != null && !category.isEmpty()) {
+            scope.and("category").is(category);
+        }
+        if (from != null || to != null) {
+            Criteria date = scope.and("date");
+            if (from != null) {
+                date.gte(from);
+            }
+            if (to != null) {
+                date.lte(to);
+            }
+        }
+        return scope;
+    }
+
+    /**
+     * Category and month totals plus net cash flow against incomes, computed by a
+     * single aggregation ($unionWith + $facet) so only the summary leaves the database.
+     */
+    public SummaryDto.SpendingSummary getSummary(String userId) {
+        // Rows the date migration has not reached yet still hold "YYYY-MM-DD" strings
+        Document month = new Document("$cond", List.of(
+                new Document("$eq", List.of(new Document("$type", "$date"), "string")),
+                new Document("$substrCP", List.of("$date", 0, 7)),
+                new Document("$dateToString", new Document("format", "%Y-%m")
+                        .append("date", "$date").append("onNull", ""))));
+
+        Document expenseRows = new Document("_id", 0)
+                .append("kind", new Document("$literal", "expense"))
+                .append("amount", 1)
+                .append("category", new Document("$ifNull", List.of("$category", "General")))
+                .append("month", month);
+        Document incomeRows = new Document("_id", 0)
+                .append("kind", new Document("$literal", "income"))
+                .append("amount", 1)
+                .append("month", month);
+
+        Document sums = new Document("expenses", sumIf("expense", "$amount"))
+                .append("incomes", sumIf("income", "$amount"))
+                .append("expenseCount", sumIf("expense", 1))
+                .append("incomeCount", sumIf("income", 1));
+        Document sumsOut = new Document("_id", 0)
+                .append("expenses", 1)
+                .append("incomes", 1)
+                .append("expenseCount", 1)
+                .append("incomeCount", 1)
+                .append("net", new Document("$subtract", List.of("$incomes", "$expenses")));
+
+        Document facets = new Document()
+                .append("byCategory", List.of(
+                        new Document("$match", new Document("kind", "expense")),
+                        new Document("$group", new Document("_id", "$category")
+                                .append("total", new Document("$sum", "$amount"))
+                                .append("count", new Document("$sum", 1))),
+                        new Document("$sort", new Document("total", -1)),
+                        new Document("$project", new Document("_id", 0)
+                                .append("category", "$_id").append("total", 1).append("count", 1))))
+                .append("byMonth", List.of(
+                        new Document("$group", new Document("_id", "$month").append("expenses", sums.get("expenses"))
+                                .append("incomes", sums.get("incomes"))
+                                .append("expenseCount", sums.get("expenseCount"))
+                                .append("incomeCount", sums.get("incomeCount"))),
+                        new Document("$sort", new Document("_id", 1)),
+                        new Document("$project", new Document(sumsOut).append("month", "$_id"))))
+                .append("totals", List.of(
+                        new Document("$group", new Document("_id", null).append("expenses", sums.get("expenses"))
+                                .append("incomes", sums.get("incomes"))
+                                .append("expenseCount", sums.get("expenseCount"))
+                                .append("incomeCount", sums.get("incomeCount"))),
+                        new Document("$project", sumsOut)));
 
-    private User getUser(String username) {
-        return userRepository.findByEmail(username)
-                .or(() -> userRepository.findByUsername(username))
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        Aggregation aggregation = Aggregation.newAggregation(
+                stage("$match", new Document("userId", userId)),
+                stage("$project", expenseRows),
+                stage("$unionWith", new Document("coll", "incomes").append("pipeline", List.of(
+                        new Document("$match", new Document("userId", userId)),
+                        new Document("$project", incomeRows)))),
+                stage("$facet", facets),
+                stage("$project", new Document("byCategory", 1).append("byMonth", 1)
+                        .append("totals", new Document("$arrayElemAt", List.of("$totals", 0)))));
+
+        SummaryDto.SpendingSummary summary = mongoTemplate
+                .aggregate(aggregation, "expenses", SummaryDto.SpendingSummary.class)
+                .getUniqueMappedResult();
+        return summary != null ? summary : new SummaryDto.SpendingSummary();
+    }
+
+    private static AggregationOperation stage(String operator, Document body) {
+        return context -> new Document(operator, body);
     }
 
-    public List<Expense> getAllExpenses(String username) {
-        User user = getUser(username);
-        return expenseRepository.findByUserId(user.getId());
+    private static Document sumIf(String kind, Object value) {
+        return new Document("$sum", new Document("$cond",
+                List.of(new Document("$eq", List.of("$kind", kind)), value, 0)));
     }
 
-    public Expense addExpense(String username, Expense expense) {
-        User user = getUser(username);
-        expense.setUserId(user.getId());
+    public Expense addExpense(String userId, Expense expense) {
+        expense.setUserId(userId);
         // Ensure ID is null so Mongo generates it, unless needed otherwise
         expense.setId(null); 
-        return expenseRepository.save(expense);
+        merchantCategoryService.autoCategorize(userId, expense);
+        Expense saved = expenseRepository.save(expense);
+        rollupService.recordExpense(saved.getUserId(), saved.getDate(), saved.getCategory(), saved.getAmount(), 1);
+        merchantCategoryService.recordExpenseChanges(userId, List.of(), List.of(saved));
+        versionService.bump(userId, VersionService.EXPENSES);
+        return saved;
     }
 
-    public Expense updateExpense(String username, String expenseId, Expense expenseDetails) {
-        User user = getUser(username);
+    public Expense updateExpense(String userId, String expenseId, Expense expenseDetails) {
         Expense expense = expenseRepository.findById(expenseId)
                 .orElseThrow(() -> new RuntimeException("Expense not found"));
 
-        if (!expense.getUserId().equals(user.getId())) {
+        if (!expense.getUserId().equals(userId)) {
             throw new RuntimeException("Unauthorized to update this expense");
         }
 
+        Expense old = withDetails(expense, expense);
+
         expense.setTitle(expenseDetails.getTitle());
         expense.setAmount(expenseDetails.getAmount());
         expense.setCategory(expenseDetails.getCategory());
         expense.setDate(expenseDetails.getDate());
         
-        return expenseRepository.save(expense);
+        Expense saved = expenseRepository.save(expense);
+        rollupService.recordExpense(saved.getUserId(), old.getDate(), old.getCategory(), old.getAmount(), -1);
+        rollupService.recordExpense(saved.getUserId(), saved.getDate(), saved.getCategory(), saved.getAmount(), 1);
+        merchantCategoryService.recordExpenseChanges(userId, List.of(old), List.of(saved));
+        versionService.bump(userId, VersionService.EXPENSES);
+        return saved;
+    }
+
+    /**
+     * Applies creates, updates and deletes as one ordered bulkWrite. Ownership of
+     * every referenced row is checked with a single userId-scoped query up front,
+     * so a batch costs a fixed handful of round trips regardless of its size.
+     * If a write fails, the items after it in the batch are not applied.
+     */
+    public BatchDto.BatchResponse applyBatch(String userId, BatchDto.ExpenseBatchRequest request) {
+        List<Expense> creates = request.getCreates() != null ? request.getCreates() : List.of();
+        List<Expense> updates = request.getUpdates() != null ? request.getUpdates() : List.of();
+        List<String> deletes = request.getDeletes() != null ? request.getDeletes() : List.of();
+        if (creates.size() + updates.size() + deletes.size() > MAX_BATCH_SIZE) {
+            throw new RuntimeException("Batch too large (max " + MAX_BATCH_SIZE + " items)");
+        }
+
+        Set<String> referencedIds = new HashSet<>(deletes);
+        updates.stream().map(Expense::getId).filter(Objects::nonNull).forEach(referencedIds::add);
+        // Current state of each owned row as the batch is applied in order
+        Map<String, Expense> current = new HashMap<>();
+        if (!referencedIds.isEmpty()) {
+            Query owned = Query.query(Criteria.where("userId").is(userId).and("id").in(referencedIds));
+            mongoTemplate.find(owned, Expense.class).forEach(e -> current.put(e.getId(), e));
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Expense.class);
+        List<BatchDto.ItemResult> results = new ArrayList<>();
+        List<BatchDto.ItemResult> queued = new ArrayList<>();
+        List<Expense> before = new ArrayList<>();
+        List<Expense> after = new ArrayList<>();
+
+        for (int i = 0; i < creates.size(); i++) {
+            Expense expense = creates.get(i);
+            expense.setId(new ObjectId().toHexString());
+            expense.setUserId(userId);
+            merchantCategoryService.autoCategorize(userId, expense);
+            bulk.insert(expense);
+            queue(results, queued, new BatchDto.ItemResult("create", i, expense.getId(), true, null));
+            before.add(null);
+            after.add(expense);
+        }
+
+        for (int i = 0; i < updates.size(); i++) {
+            Expense details = updates.get(i);
+            Expense old = details.getId() != null ? current.get(details.getId()) : null;
+            if (old == null) {
+                results.add(new BatchDto.ItemResult("update", i, details.getId(), false, "Expense not found"));
+                continue;
+            }
+            Expense updated = withDetails(old, details);
+            current.put(updated.getId(), updated);
+            bulk.updateOne(ownedRow(userId, updated.getId()), new Update()
+                    .set("title", updated.getTitle())
+                    .set("amount", updated.getAmount())
+                    .set("category", updated.getCategory())
+                    .set("date", updated.getDate()));
+            queue(results, queued, new BatchDto.ItemResult("update", i, updated.getId(), true, null));
+            before.add(old);
+            after.add(updated);
+        }
+
+        for (int i = 0; i < deletes.size(); i++) {
+            String id = deletes.get(i);
+            Expense old = id != null ? current.remove(id) : null;
+            if (old == null) {
+                results.add(new BatchDto.ItemResult("delete", i, id, false, "Expense not found"));
+                continue;
+            }
+            bulk.remove(ownedRow(userId, id));
+            queue(results, queued, new BatchDto.ItemResult("delete", i, id, true, null));
+            before.add(old);
+            after.add(null);
+        }
+
+        int failedAt = queued.size();
+        String failure = null;
+        if (!queued.isEmpty()) {
+            try {
+                bulk.execute();
+            } catch (BulkOperationException e) {
+                failedAt = e.getErrors().isEmpty() ? 0 : e.getErrors().get(0).getIndex();
+                failure = e.getErrors().isEmpty() ? e.getMessage() : e.getErrors().get(0).getMessage();
+            }
+        }
+
+        List<Expense> removed = new ArrayList<>();
+        List<Expense> added = new ArrayList<>();
+        for (int j = 0; j < queued.size(); j++) {
+            if (j < failedAt) {
+                if (before.get(j) != null) {
+                    removed.add(before.get(j));
+                }
+                if (after.get(j) != null) {
+                    added.add(after.get(j));
+                }
+                continue;
+            }
+            BatchDto.ItemResult result = queued.get(j);
+            result.setSuccess(false);
+            result.setMessage(j == failedAt ? failure : "Not applied: an earlier item in the batch failed");
+        }
+        rollupService.recordExpenseChanges(userId, removed, added);
+        merchantCategoryService.recordExpenseChanges(userId, removed, added);
+        if (!queued.isEmpty()) {
+            versionService.bump(userId, VersionService.EXPENSES);
+        }
+
+        return new BatchDto.BatchResponse(results);
+    }
+
+    private static void queue(List<BatchDto.ItemResult> results, List<BatchDto.ItemResult> queued,
+            BatchDto.ItemResult result) {
+        results.add(result);
+        queued.add(result);
+    }
+
+    private static Query ownedRow(String userId, String id) {
+        return Query.query(Criteria.where("id").is(id).and("userId").is(userId));
+    }
+
+    private static Expense withDetails(Expense old, Expense details) {
+        Expense updated = new Expense();
+        updated.setId(old.getId());
+        updated.setUserId(old.getUserId());
+        updated.setCreatedAt(old.getCreatedAt());
+        updated.setTitle(details.getTitle());
+        updated.setAmount(details.getAmount());
+        updated.setCategory(details.getCategory());
+        updated.setDate(details.getDate());
+        return updated;
     }
 
-    public void deleteExpense(String username, String expenseId) {
-        User user = getUser(username);
+    public void deleteExpense(String userId, String expenseId) {
         Expense expense = expenseRepository.findById(expenseId)
                 .orElseThrow(() -> new RuntimeException("Expense not found"));
 
-        if (!expense.getUserId().equals(user.getId())) {
+        if (!expense.getUserId().equals(userId)) {
             throw new RuntimeException("Unauthorized to delete this expense");
         }
 
         expenseRepository.delete(expense);
+        rollupService.recordExpense(expense.getUserId(), expense.getDate(), expense.getCategory(),
+                expense.getAmount(), -1);
+        merchantCategoryService.recordExpenseChanges(userId, List.of(expense), List.of());
+        versionService.bump(userId, VersionService.EXPENSES);
     }
 }
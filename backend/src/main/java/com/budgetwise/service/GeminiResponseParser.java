@@ -0,0 +1,138 @@
+package com.budgetwise.service;
+
+import com.budgetwise.dto.GeminiDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Reads Gemini replies into the typed records of GeminiDto and checks receipt
+ * output against the shape the scan prompt asks for. Every final candidate
+ * is counted under ai.gemini.responses{operation, finishReason}, and its token
+ * usage under ai.gemini.tokens{operation, type=prompt|output}.
+ */
+@Component
+public class GeminiResponseParser {
+
+    public static final String FINISHED = "STOP";
+
+    public static final List<String> RECEIPT_CATEGORIES = List.of(
+            "Food", "Travel", "Shopping", "Utilities", "Health", "Education", "Entertainment", "Rent", "General");
+
+    public static class InvalidReceiptException extends RuntimeException {
+        public InvalidReceiptException(String message) {
+            super(message);
+        }
+    }
+
+    // A leading ```json (or bare ```) fence and a trailing ``` fence
+    private static final Pattern CODE_FENCE = Pattern.compile("^```[A-Za-z]*\\s*|\\s*```$");
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader responseReader;
+    private final MeterRegistry meterRegistry;
+
+    public GeminiResponseParser(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.responseReader = objectMapper.readerFor(GeminiDto.Response.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** The first candidate of a reply, or null if there is none. */
+    public GeminiDto.Candidate firstCandidate(GeminiDto.Response response, String operation) {
+        if (response == null) {
+            return null;
+        }
+        GeminiDto.Candidate candidate = response.firstCandidate();
+        // Streamed chunks carry a finish reason only on the last one, so this counts each reply once
+        if (candidate != null && candidate.finishReason() != null) {
+            record(operation, candidate.finishReason(), response.usageMetadata());
+        }
+        return candidate;
+    }
+
+    // One streamed chunk ("data: {...}" payload); null if it is not a reply. Only the last carries a finishReason
+    public GeminiDto.Candidate chunk(String json, String operation) {
+        try {
+            return firstCandidate(responseReader.readValue(json), operation);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Strips any markdown fences from the model's receipt output and checks it
+     * is an object with a non-blank title, a non-negative numeric amount, one
+     * of RECEIPT_CATEGORIES and a YYYY-MM-DD date. Returns it re-serialized
+     * with exactly those four fields.
+     */
+    public String receiptJson(String text) {
+        if (text == null || text.isBlank()) {
+            throw new InvalidReceiptException("Could not parse receipt");
+        }
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(CODE_FENCE.matcher(text.trim()).replaceAll(""));
+        } catch (Exception e) {
+            throw new InvalidReceiptException("Could not parse receipt");
+        }
+        if (node == null || !node.isObject()) {
+            throw new InvalidReceiptException("Could not parse receipt");
+        }
+
+        JsonNode title = node.get("title");
+        JsonNode amount = node.get("amount");
+        JsonNode category = node.get("category");
+        JsonNode date = node.get("date");
+        if (title == null || !title.isTextual() || title.asText().isBlank()) {
+            throw invalid("title");
+        }
+        if (amount == null || !amount.isNumber() || amount.asDouble() < 0) {
+            throw invalid("amount");
+        }
+        if (category == null || !RECEIPT_CATEGORIES.contains(category.asText())) {
+            throw invalid("category");
+        }
+        if (date == null || !date.isTextual()) {
+            throw invalid("date");
+        }
+        try {
+            LocalDate.parse(date.asText());
+        } catch (DateTimeParseException e) {
+            throw invalid("date");
+        }
+
+        try {
+            return objectMapper.writeValueAsString(new GeminiDto.Receipt(
+                    title.asText().trim(), amount.asDouble(), category.asText(), date.asText()));
+        } catch (Exception e) {
+            throw new InvalidReceiptException("Could not parse receipt");
+        }
+    }
+
+    private static InvalidReceiptException invalid(String field) {
+        return new InvalidReceiptException("Could not parse receipt: invalid " + field);
+    }
+
+    private void record(String operation, String finishReason, GeminiDto.UsageMetadata usage) {
+        meterRegistry.counter("ai.gemini.responses", "operation", operation, "finishReason", finishReason).increment();
+        if (usage == null) {
+            return;
+        }
+        if (usage.promptTokenCount() != null) {
+            meterRegistry.summary("ai.gemini.tokens", "operation", operation, "type", "prompt")
+                    .record(usage.promptTokenCount());
+        }
+        if (usage.candidatesTokenCount() != null) {
+            meterRegistry.summary("ai.gemini.tokens", "operation", operation, "type", "output")
+                    .record(usage.candidatesTokenCount());
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package com.budgetwise.service;
 
+import com.budgetwise.dto.PageDto;
 import com.budgetwise.model.Goal;
-import com.budgetwise.model.User;
 import com.budgetwise.repository.GoalRepository;
-import com.budgetwise.repository.UserRepository;
+import com.budgetwise.repository.KeysetPager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
@@ -16,32 +18,37 @@ public class GoalService {
     private GoalRepository goalRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private KeysetPager keysetPager;
 
-    private User getUser(String username) {
-        return userRepository.findByEmail(username)
-                .or(() -> userRepository.findByUsername(username))
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    @Autowired
+    private VersionService versionService;
+
+    public String getGoalsEtag(String userId) {
+        return versionService.etag(userId, VersionService.GOALS);
+    }
+
+    public List<Goal> getAllGoals(String userId) {
+        return goalRepository.findByUserId(userId);
     }
 
-    public List<Goal> getAllGoals(String username) {
-        User user = getUser(username);
-        return goalRepository.findByUserId(user.getId());
+    public PageDto.CursorPage<Goal> getGoalsPage(String userId, String cursor, Integer limit) {
+        return keysetPager.fetch(Goal.class, Criteria.where("userId").is(userId), "createdAt",
+                cursor, limit, LocalDateTime::parse, Goal::getCreatedAt, Goal::getId);
     }
 
-    public Goal addGoal(String username, Goal goal) {
-        User user = getUser(username);
-        goal.setUserId(user.getId());
+    public Goal addGoal(String userId, Goal goal) {
+        goal.setUserId(userId);
         goal.setId(null);
-        return goalRepository.save(goal);
+        Goal saved = goalRepository.save(goal);
+        versionService.bump(userId, VersionService.GOALS);
+        return saved;
     }
 
-    public Goal updateGoal(String username, String goalId, Goal goalDetails) {
-        User user = getUser(username);
+    public Goal updateGoal(String userId, String goalId, Goal goalDetails) {
         Goal goal = goalRepository.findById(goalId)
                 .orElseThrow(() -> new RuntimeException("Goal not found"));
 
-        if (!goal.getUserId().equals(user.getId())) {
+        if (!goal.getUserId().equals(userId)) {
              throw new RuntimeException("Unauthorized to update this goal");
         }
         
@@ -50,18 +57,20 @@ public class GoalService {
         goal.setCurrentAmount(goalDetails.getCurrentAmount());
         goal.setDeadline(goalDetails.getDeadline());
 
-        return goalRepository.save(goal);
+        Goal saved = goalRepository.save(goal);
+        versionService.bump(userId, VersionService.GOALS);
+        return saved;
     }
 
-    public void deleteGoal(String username, String goalId) {
-        User user = getUser(username);
+    public void deleteGoal(String userId, String goalId) {
         Goal goal = goalRepository.findById(goalId)
                 .orElseThrow(() -> new RuntimeException("Goal not found"));
 
-        if (!goal.getUserId().equals(user.getId())) {
+        if (!goal.getUserId().equals(userId)) {
             throw new RuntimeException("Unauthorized to delete this goal");
         }
 
         goalRepository.delete(goal);
+        versionService.bump(userId, VersionService.GOALS);
     }
 }
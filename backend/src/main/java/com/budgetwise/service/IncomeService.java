@@ -1,12 +1,16 @@
 package com.budgetwise.service;
 
+import com.budgetwise.dto.PageDto;
 import com.budgetwise.model.Income;
-import com.budgetwise.model.User;
 import com.budgetwise.repository.IncomeRepository;
-import com.budgetwise.repository.UserRepository;
+import com.budgetwise.repository.KeysetPager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @Service
@@ -16,35 +20,65 @@ public class IncomeService {
     private IncomeRepository incomeRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private KeysetPager keysetPager;
 
-    private User getUser(String username) {
-        return userRepository.findByEmail(username)
-                .or(() -> userRepository.findByUsername(username))
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private VersionService versionService;
+
+    public String getIncomesEtag(String userId) {
+        return versionService.etag(userId, VersionService.INCOMES);
     }
 
-    public List<Income> getAllIncomes(String username) {
-        User user = getUser(username);
-        return incomeRepository.findByUserId(user.getId());
+    public List<Income> getAllIncomes(String userId) {
+        return incomeRepository.findByUserId(userId);
+    }
+
+    public List<Income> getIncomesInRange(String userId, LocalDate from, LocalDate to) {
+        Range<LocalDate> dates = Range.of(
+                from != null ? Range.Bound.inclusive(from) : Range.Bound.unbounded(),
+                to != null ? Range.Bound.inclusive(to) : Range.Bound.unbounded());
+        return incomeRepository.findByUserIdAndDateBetween(userId, dates,
+                Sort.by(Sort.Direction.DESC, "date", "id"));
+    }
+
+    public PageDto.CursorPage<Income> getIncomesPage(String userId, LocalDate from, LocalDate to,
+            String cursor, Integer limit) {
+        Criteria scope = Criteria.where("userId").is(userId);
+        if (from != null || to != null) {
+            Criteria date = scope.and("date");
+            if (from != null) {
+                date.gte(from);
+            }
+            if (to != null) {
+                date.lte(to);
+            }
+        }
+        return keysetPager.fetch(Income.class, scope, "date",
+                cursor, limit, LocalDate::parse, Income::getDate, Income::getId);
     }
 
-    public Income addIncome(String username, Income income) {
-        User user = getUser(username);
-        income.setUserId(user.getId());
+    public Income addIncome(String userId, Income income) {
+        income.setUserId(userId);
         income.setId(null);
-        return incomeRepository.save(income);
+        Income saved = incomeRepository.save(income);
+        rollupService.recordIncome(saved.getUserId(), saved.getDate(), saved.getAmount(), 1);
+        versionService.bump(userId, VersionService.INCOMES);
+        return saved;
     }
 
-    public void deleteIncome(String username, String incomeId) {
-        User user = getUser(username);
+    public void deleteIncome(String userId, String incomeId) {
         Income income = incomeRepository.findById(incomeId)
                 .orElseThrow(() -> new RuntimeException("Income not found"));
 
-        if (!income.getUserId().equals(user.getId())) {
+        if (!income.getUserId().equals(userId)) {
             throw new RuntimeException("Unauthorized to delete this income");
         }
 
         incomeRepository.delete(income);
+        rollupService.recordIncome(income.getUserId(), income.getDate(), income.getAmount(), -1);
+        versionService.bump(userId, VersionService.INCOMES);
     }
 }
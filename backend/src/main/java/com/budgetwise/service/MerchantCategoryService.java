@@ -0,0 +1,245 @@
+package com.budgetwise.service;
+
+import com.budgetwise.model.Expense;
+import com.budgetwise.model.MerchantCategory;
+import com.budgetwise.util.TtlCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Learns how each user categorizes each merchant. Every expense write applies
+ * $inc deltas to one "merchant_categories" document per (user, normalized
+ * title), holding per-category counts and amount totals. Lookups are served
+ * from an in-memory copy of the user's memo, loaded once and then kept up to
+ * date by the same deltas, so categorizing is a hash lookup.
+ */
+@Service
+public class MerchantCategoryService {
+
+    private static final int BATCH_SIZE = 500;
+
+    // Standalone numbers such as store numbers ("#1234", "1234."), but not the 7 in "7-Eleven"
+    private static final Pattern STORE_NUMBER = Pattern.compile("(?<!\\S)#?\\p{N}+[.,]?(?!\\S)");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${merchants.rebuild-on-startup:false}")
+    private boolean rebuildOnStartup;
+
+    // userId -> normalized merchant -> category counts
+    private final TtlCache<String, Map<String, Map<String, Long>>> memos;
+
+    public MerchantCategoryService(MeterRegistry meterRegistry,
+            @Value("${merchants.cache.max-users:2000}") int maxUsers,
+            @Value("${merchants.cache.ttl-minutes:30}") long ttlMinutes) {
+        this.memos = new TtlCache<String, Map<String, Map<String, Long>>>(maxUsers, Duration.ofMinutes(ttlMinutes))
+                .registerMetrics(meterRegistry, "merchant-categories");
+    }
+
+    /** The category this user most often files the merchant under, or null if unknown. */
+    public String suggestCategory(String userId, String title) {
+        String merchant = merchantKey(title);
+        if (userId == null || merchant == null) {
+            return null;
+        }
+        Map<String, Long> counts = memos.computeIfAbsent(userId, this::load).get(merchant);
+        if (counts == null) {
+            return null;
+        }
+        synchronized (counts) {
+            return counts.entrySet().stream()
+                    .filter(e -> e.getValue() > 0)
+                    .max(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey)
+                    .orElse(null);
+        }
+    }
+
+    // Fills in a missing category on a manual entry from the user's own history
+    public void autoCategorize(String userId, Expense expense) {
+        if (expense.getCategory() == null || expense.getCategory().isBlank()) {
+            String suggested = suggestCategory(userId, expense.getTitle());
+            if (suggested != null) {
+                expense.setCategory(suggested);
+            }
+        }
+    }
+
+    /**
+     * Replaces the AI-chosen category of a scan result with the one the user
+     * normally uses for that merchant. Results that are not JSON objects, or
+     * whose merchant is unknown, are returned unchanged.
+     */
+    public String applyToScan(String userId, String scanJson) {
+        try {
+            JsonNode node = objectMapper.readTree(scanJson);
+            if (node == null || !node.isObject() || node.has("error")) {
+                return scanJson;
+            }
+            String suggested = suggestCategory(userId, node.path("title").asText(null));
+            if (suggested == null || suggested.equals(node.path("category").asText(null))) {
+                return scanJson;
+            }
+            ((ObjectNode) node).put("category", suggested);
+            return objectMapper.writeValueAsString(node);
+        } catch (Exception e) {
+            return scanJson;
+        }
+    }
+
+    // Folds many row changes into one upsert per affected merchant, sent as a single bulk write
+    public void recordExpenseChanges(String userId, List<Expense> removed, List<Expense> added) {
+        Map<String, Map<String, Number>> deltas = new HashMap<>();
+        removed.forEach(e -> addDelta(deltas, e, -1));
+        added.forEach(e -> addDelta(deltas, e, 1));
+        if (userId == null || deltas.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MerchantCategory.class);
+        deltas.forEach((merchant, fields) -> {
+            Update update = new Update().setOnInsert("userId", userId).setOnInsert("merchant", merchant);
+            fields.forEach(update::inc);
+            bulk.upsert(Query.query(Criteria.where("_id").is(memoId(userId, merchant))), update);
+        });
+        try {
+            bulk.execute();
+        } catch (Exception e) {
+            // The expense write already succeeded; a rebuild repairs the memo
+            System.err.println("Failed to update merchant categories for " + userId + ": " + e.getMessage());
+            memos.invalidate(userId);
+            return;
+        }
+
+        Map<String, Map<String, Long>> memo = memos.peek(userId);
+        if (memo != null) {
+            deltas.forEach((merchant, fields) -> {
+                Map<String, Long> counts = memo.computeIfAbsent(merchant, m -> new HashMap<>());
+                synchronized (counts) {
+                    fields.forEach((field, delta) -> {
+                        if (field.startsWith("categories.")) {
+                            counts.merge(field.substring("categories.".length()), delta.longValue(), Long::sum);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    private static void addDelta(Map<String, Map<String, Number>> deltas, Expense expense, int sign) {
+        String merchant = merchantKey(expense.getTitle());
+        if (merchant == null) {
+            return;
+        }
+        Map<String, Number> fields = deltas.computeIfAbsent(merchant, m -> new HashMap<>());
+        fields.merge("categories." + RollupService.categoryKey(expense.getCategory()), (long) sign, MerchantCategoryService::sum);
+        fields.merge("count", (long) sign, MerchantCategoryService::sum);
+        fields.merge("amountTotal", expense.getAmount() != null ? expense.getAmount() * sign : 0.0, MerchantCategoryService::sum);
+    }
+
+    private static Number sum(Number a, Number b) {
+        return a instanceof Long ? (Number) (a.longValue() + b.longValue()) : (Number) (a.doubleValue() + b.doubleValue());
+    }
+
+    private Map<String, Map<String, Long>> load(String userId) {
+        Query query = Query.query(Criteria.where("userId").is(userId));
+        query.fields().include("merchant", "categories");
+        Map<String, Map<String, Long>> memo = new ConcurrentHashMap<>();
+        mongoTemplate.find(query, MerchantCategory.class)
+                .forEach(m -> memo.put(m.getMerchant(), new HashMap<>(m.getCategories())));
+        return memo;
+    }
+
+    @Order(2)
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartupIfRequested() {
+        if (rebuildOnStartup) {
+            rebuild(null);
+        }
+    }
+
+    /**
+     * Recomputes the memo from expenses, for one user or for everyone when
+     * userId is null. Titles are normalized in Java, so expenses are streamed
+     * (title, category and amount only) and folded per user before writing.
+     */
+    public void rebuild(String userId) {
+        Query scope = userId != null ? Query.query(Criteria.where("userId").is(userId)) : new Query();
+        mongoTemplate.remove(scope, MerchantCategory.class);
+
+        Query expenses = userId != null ? Query.query(Criteria.where("userId").is(userId)) : new Query();
+        expenses.with(Sort.by("userId"));
+        expenses.fields().include("userId", "title", "category", "amount");
+        expenses.cursorBatchSize(BATCH_SIZE);
+
+        String currentUser = null;
+        List<Expense> pending = new ArrayList<>();
+        try (Stream<Expense> rows = mongoTemplate.stream(expenses, Expense.class)) {
+            Iterator<Expense> it = rows.iterator();
+            while (it.hasNext()) {
+                Expense expense = it.next();
+                if (currentUser != null && (!currentUser.equals(expense.getUserId()) || pending.size() == BATCH_SIZE)) {
+                    recordExpenseChanges(currentUser, List.of(), pending);
+                    pending = new ArrayList<>();
+                }
+                currentUser = expense.getUserId();
+                pending.add(expense);
+            }
+        }
+        if (currentUser != null && !pending.isEmpty()) {
+            recordExpenseChanges(currentUser, List.of(), pending);
+        }
+
+        if (userId != null) {
+            memos.invalidate(userId);
+        } else {
+            memos.clear();
+        }
+    }
+
+    private static String memoId(String userId, String merchant) {
+        return userId + ":" + merchant;
+    }
+
+    // "STARBUCKS #1234", "Starbucks  1234" and "starbucks." all become "starbucks"
+    static String merchantKey(String title) {
+        if (title == null) {
+            return null;
+        }
+        String key = STORE_NUMBER.matcher(title.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        key = NON_ALPHANUMERIC.matcher(key).replaceAll(" ").trim();
+        key = WHITESPACE.matcher(key).replaceAll(" ");
+        return key.isEmpty() ? null : key;
+    }
+}
@@ -1,19 +1,19 @@
 package com.budgetwise.service;
 
-import com.budgetwise.model.Otp;
-import com.budgetwise.repository.OtpRepository;
+import com.budgetwise.repository.OtpStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.security.SecureRandom;
-import java.time.LocalDateTime;
-import java.util.Optional;
+import java.time.Duration;
 
 @Service
 public class OtpService {
 
+    private static final Duration OTP_VALIDITY = Duration.ofMinutes(5);
+
     @Autowired
-    private OtpRepository otpRepository;
+    private OtpStore otpStore;
 
     @Autowired
     private EmailService emailService;
@@ -25,15 +25,8 @@ public class OtpService {
         int otpValue = 100000 + random.nextInt(900000);
         String otpCode = String.valueOf(otpValue);
 
-        // Delete existing OTP for this identifier if any
-        otpRepository.deleteByIdentifier(identifier);
-
-        // Save new OTP
-        Otp otp = new Otp();
-        otp.setIdentifier(identifier);
-        otp.setOtpCode(otpCode);
-        otp.setExpiryDate(LocalDateTime.now().plusMinutes(5));
-        otpRepository.save(otp);
+        // Replaces any earlier OTP for this identifier
+        otpStore.put(identifier, otpCode, OTP_VALIDITY);
 
         // Send OTP
         System.out.println("-------------------------------------------------");
@@ -51,15 +44,6 @@ public class OtpService {
     }
 
     public boolean verifyOtp(String identifier, String otpCode) {
-        Optional<Otp> otpOptional = otpRepository.findByIdentifier(identifier);
-
-        if (otpOptional.isPresent()) {
-            Otp otp = otpOptional.get();
-            if (otp.getOtpCode().equals(otpCode) && !otp.isExpired()) {
-                otpRepository.delete(otp); // Consume OTP
-                return true;
-            }
-        }
-        return false;
+        return otpStore.consume(identifier, otpCode); // Consume OTP
     }
 }
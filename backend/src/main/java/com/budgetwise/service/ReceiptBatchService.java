@@ -0,0 +1,185 @@
+package com.budgetwise.service;
+
+import com.budgetwise.dto.ScanJobDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Scans many receipts at once. Each file is prepared on the request thread
+ * (hash, cache lookup, downscale); the AI calls then run in parallel on
+ * "lanes". A batch gets as many lanes as the user has free slots
+ * (receipts.batch.per-user-concurrency, shared by all of the user's batches),
+ * and lanes run on receiptBatchExecutor, whose size is the global cap.
+ */
+@Service
+public class ReceiptBatchService {
+
+    public static class TooManyScansException extends RuntimeException {
+        public TooManyScansException(String message) {
+            super(message);
+        }
+    }
+
+    @Autowired
+    private ReceiptScanService receiptScanService;
+
+    @Autowired
+    private MerchantCategoryService merchantCategoryService;
+
+    @Autowired
+    @Qualifier("receiptBatchExecutor")
+    private ThreadPoolTaskExecutor executor;
+
+    @Value("${receipts.batch.max-files:20}")
+    private int maxFiles;
+
+    @Value("${receipts.batch.per-user-concurrency:10}")
+    private int perUserConcurrency;
+
+    // Only users with scans in flight have an entry: permits are taken inside compute()
+    // and the entry is dropped once all are back, so an idle user's semaphore cannot be
+    // removed between being looked up and acquired
+    private final Map<String, Semaphore> userSlots = new ConcurrentHashMap<>();
+
+    private record Item(int index, String fileName, ReceiptScanService.PendingScan pending, String error) {
+    }
+
+    /**
+     * Starts the batch and returns once every file has a result. onResult is
+     * called for each file as soon as it finishes (from worker threads).
+     */
+    public CompletableFuture<List<ScanJobDto.BatchItem>> scanAll(String userId, List<MultipartFile> files,
+            Consumer<ScanJobDto.BatchItem> onResult) {
+        if (files == null || files.isEmpty()) {
+            throw new RuntimeException("No files uploaded");
+        }
+        if (files.size() > maxFiles) {
+            throw new RuntimeException("At most " + maxFiles + " receipts can be scanned at once");
+        }
+
+        List<ScanJobDto.BatchItem> results = new ArrayList<>();
+        CompletableFuture<List<ScanJobDto.BatchItem>> done = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(files.size());
+        Consumer<ScanJobDto.BatchItem> emit = item -> {
+            synchronized (results) {
+                results.add(item);
+            }
+            try {
+                onResult.accept(item);
+            } catch (Exception e) {
+                // a listener failure (e.g. a closed stream) must not stall the batch
+            }
+            if (remaining.decrementAndGet() == 0) {
+                results.sort(Comparator.comparingInt(ScanJobDto.BatchItem::getIndex));
+                done.complete(results);
+            }
+        };
+
+        // Cheap, local work first; cache hits and unreadable files finish right away
+        Queue<Item> queue = new ConcurrentLinkedQueue<>();
+        List<Item> immediate = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            Item item;
+            try {
+                item = new Item(i, file.getOriginalFilename(), receiptScanService.prepare(file), null);
+            } catch (Exception e) {
+                item = new Item(i, file.getOriginalFilename(), null, "Could not read file: " + e.getMessage());
+            }
+            if (item.error() != null || item.pending().isCached()) {
+                immediate.add(item);
+            } else {
+                queue.add(item);
+            }
+        }
+
+        int[] acquired = {0};
+        Semaphore slots = userSlots.compute(userId, (id, current) -> {
+            Semaphore userLanes = current != null ? current : new Semaphore(perUserConcurrency);
+            while (acquired[0] < queue.size() && userLanes.tryAcquire()) {
+                acquired[0]++;
+            }
+            return userLanes.availablePermits() == perUserConcurrency ? null : userLanes;
+        });
+        int lanes = acquired[0];
+        if (lanes == 0 && !queue.isEmpty()) {
+            throw new TooManyScansException("Too many receipt scans in progress, please try again shortly");
+        }
+
+        immediate.forEach(item -> emit.accept(item.pending() != null
+                ? toResult(userId, item, item.pending().cachedResult())
+                : failed(item, item.error())));
+        for (int lane = 0; lane < lanes; lane++) {
+            try {
+                executor.execute(() -> runLane(userId, queue, slots, emit));
+            } catch (TaskRejectedException e) {
+                releaseSlot(userId, slots); // other lanes drain the queue; without any, fail what is left
+                if (lane == 0) {
+                    drainAsFailed(queue, emit, "Receipt scanner is busy, please try again shortly");
+                }
+            }
+        }
+        return done;
+    }
+
+    // One lane scans queued files one after another until none are left
+    private void runLane(String userId, Queue<Item> queue, Semaphore slots, Consumer<ScanJobDto.BatchItem> emit) {
+        try {
+            Item item;
+            while ((item = queue.poll()) != null) {
+                ScanJobDto.BatchItem result;
+                try {
+                    result = toResult(userId, item, receiptScanService.complete(item.pending()));
+                } catch (Exception e) {
+                    result = failed(item, e.getMessage() != null ? e.getMessage() : "Scan failed");
+                }
+                emit.accept(result);
+            }
+        } finally {
+            releaseSlot(userId, slots);
+        }
+    }
+
+    private void releaseSlot(String userId, Semaphore slots) {
+        slots.release();
+        userSlots.computeIfPresent(userId, (id, current) ->
+                current == slots && current.availablePermits() == perUserConcurrency ? null : current);
+    }
+
+    private void drainAsFailed(Queue<Item> queue, Consumer<ScanJobDto.BatchItem> emit, String error) {
+        Item item;
+        while ((item = queue.poll()) != null) {
+            emit.accept(failed(item, error));
+        }
+    }
+
+    private ScanJobDto.BatchItem toResult(String userId, Item item, String result) {
+        String error = receiptScanService.errorOf(result);
+        if (error != null) {
+            return failed(item, error);
+        }
+        return new ScanJobDto.BatchItem(item.index(), item.fileName(), ScanJobService.DONE,
+                merchantCategoryService.applyToScan(userId, result), null);
+    }
+
+    private ScanJobDto.BatchItem failed(Item item, String error) {
+        return new ScanJobDto.BatchItem(item.index(), item.fileName(), ScanJobService.FAILED, null, error);
+    }
+}
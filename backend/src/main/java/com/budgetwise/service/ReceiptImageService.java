@@ -0,0 +1,221 @@
+package com.budgetwise.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Shrinks uploaded receipt photos before they are sent to the AI provider.
+ * A 12 MP phone photo is decoded with source subsampling (so the full-size
+ * raster is never allocated), scaled to at most receipts.max-dimension on the
+ * longest side and re-encoded as JPEG. Re-encoding drops EXIF, so a JPEG's
+ * Orientation tag is applied to the pixels first; otherwise portrait phone
+ * photos would reach the provider lying on their side. Formats ImageIO cannot
+ * decode are passed through unchanged.
+ */
+@Service
+public class ReceiptImageService {
+
+    public record PreparedImage(byte[] bytes, String mimeType) {
+    }
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+    private static final int APP1_MARKER = 0xE1;
+    private static final int ORIENTATION_TAG = 0x0112;
+    private static final byte[] EXIF_HEADER = "Exif\0\0".getBytes(StandardCharsets.ISO_8859_1);
+
+    @Value("${receipts.max-dimension:1600}")
+    private int maxDimension;
+
+    @Value("${receipts.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    // Small uploads within the bound are sent as-is rather than re-compressed
+    @Value("${receipts.passthrough-bytes:524288}")
+    private long passthroughBytes;
+
+    public PreparedImage prepare(MultipartFile file) throws IOException {
+        String mimeType = file.getContentType() != null ? file.getContentType() : "image/jpeg";
+
+        try (InputStream in = file.getInputStream();
+                ImageInputStream imageIn = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = imageIn != null ? ImageIO.getImageReaders(imageIn) : null;
+            if (readers == null || !readers.hasNext()) {
+                return passthrough(file, mimeType);
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                // Metadata is needed for the EXIF orientation
+                reader.setInput(imageIn, true, false);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int longest = Math.max(width, height);
+                if (longest <= maxDimension && file.getSize() <= passthroughBytes) {
+                    return passthrough(file, mimeType);
+                }
+
+                // Subsample to roughly the target size while decoding, then scale precisely
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, longest / maxDimension);
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                BufferedImage upright = applyOrientation(decoded, exifOrientation(reader.getImageMetadata(0)));
+
+                return new PreparedImage(encodeJpeg(scaleToBound(upright)), "image/jpeg");
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            // e.g. CMYK JPEGs or truncated files: let the AI provider try the original
+            System.err.println("Receipt preprocessing skipped: " + e.getMessage());
+            return passthrough(file, mimeType);
+        }
+    }
+
+    private PreparedImage passthrough(MultipartFile file, String mimeType) throws IOException {
+        return new PreparedImage(file.getBytes(), mimeType);
+    }
+
+    // EXIF Orientation (1-8) from a JPEG's APP1 segment; 1 (as stored) when absent or unreadable
+    static int exifOrientation(IIOMetadata metadata) {
+        if (metadata == null || !JPEG_METADATA_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+            return 1;
+        }
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA_FORMAT);
+        var markers = root.getElementsByTagName("unknown");
+        for (int i = 0; i < markers.getLength(); i++) {
+            IIOMetadataNode marker = (IIOMetadataNode) markers.item(i);
+            if (Integer.toString(APP1_MARKER).equals(marker.getAttribute("MarkerTag"))
+                    && marker.getUserObject() instanceof byte[] segment) {
+                int orientation = orientationFromExif(segment);
+                if (orientation != 0) {
+                    return orientation;
+                }
+            }
+        }
+        return 1;
+    }
+
+    // Reads tag 0x0112 from IFD0 of an "Exif\0\0" + TIFF segment; 0 if not found
+    static int orientationFromExif(byte[] segment) {
+        int tiff = EXIF_HEADER.length;
+        if (segment.length < tiff + 8) {
+            return 0;
+        }
+        for (int i = 0; i < tiff; i++) {
+            if (segment[i] != EXIF_HEADER[i]) {
+                return 0;
+            }
+        }
+        ByteBuffer buf = ByteBuffer.wrap(segment);
+        if (segment[tiff] == 'I' && segment[tiff + 1] == 'I') {
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (segment[tiff] != 'M' || segment[tiff + 1] != 'M') {
+            return 0;
+        }
+        long ifd = tiff + Integer.toUnsignedLong(buf.getInt(tiff + 4));
+        if (ifd + 2 > segment.length) {
+            return 0;
+        }
+        int entries = Short.toUnsignedInt(buf.getShort((int) ifd));
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > segment.length) {
+                return 0;
+            }
+            if (Short.toUnsignedInt(buf.getShort(entry)) == ORIENTATION_TAG) {
+                int value = Short.toUnsignedInt(buf.getShort(entry + 8));
+                return value >= 1 && value <= 8 ? value : 0;
+            }
+        }
+        return 0;
+    }
+
+    // Redraws the image so it displays upright without the EXIF tag
+    static BufferedImage applyOrientation(BufferedImage source, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return source;
+        }
+        int w = source.getWidth();
+        int h = source.getHeight();
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);  // mirrored
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h); // upside down
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);  // mirrored vertically
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);   // transposed
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);  // rotate 90 clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w); // transversed
+            default -> new AffineTransform(0, -1, 1, 0, 0, w); // 8: rotate 90 counter-clockwise
+        };
+        boolean swapsSides = orientation >= 5;
+        BufferedImage target = new BufferedImage(swapsSides ? h : w, swapsSides ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.drawImage(source, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private BufferedImage scaleToBound(BufferedImage source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        // Always redraw into opaque RGB: JPEG has no alpha channel
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, targetWidth, targetHeight);
+            g.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * 1024);
+        try (MemoryCacheImageOutputStream imageOut = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,170 @@
+package com.budgetwise.service;
+
+import com.budgetwise.model.ReceiptScan;
+import com.budgetwise.repository.ReceiptScanRepository;
+import com.budgetwise.util.TtlCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * Scans receipt uploads, remembering results by content hash so re-uploading
+ * the same photo skips both preprocessing and the AI round trip. Results live
+ * in an in-memory LRU and, when receipts.cache.persistent is on, in the
+ * receipt_scans collection (expired by a TTL index). Failed scans are not cached.
+ */
+@Service
+public class ReceiptScanService {
+
+    @Autowired
+    private ReceiptImageService receiptImageService;
+
+    @Autowired
+    private AIService aiService;
+
+    @Autowired
+    private ReceiptScanRepository receiptScanRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${receipts.cache.persistent:false}")
+    private boolean persistent;
+
+    private final TtlCache<String, String> cache;
+
+    public ReceiptScanService(MeterRegistry meterRegistry,
+            @Value("${receipts.cache.max-size:500}") int maxSize,
+            @Value("${receipts.cache.ttl-hours:24}") long ttlHours) {
+        this.cache = new TtlCache<String, String>(maxSize, Duration.ofHours(ttlHours))
+                .registerMetrics(meterRegistry, "receipt-scans");
+    }
+
+    /**
+     * Either a cached result or a preprocessed image still waiting for the AI
+     * call. Small enough to queue: the original upload is not kept.
+     */
+    public record PendingScan(String key, String cachedResult, ReceiptImageService.PreparedImage image) {
+
+        public boolean isCached() {
+            return cachedResult != null;
+        }
+    }
+
+    public String scan(MultipartFile file) throws IOException {
+        return complete(prepare(file));
+    }
+
+    // Cheap part of a scan (hashing, cache lookup, downscaling), run on the request thread
+    public PendingScan prepare(MultipartFile file) throws IOException {
+        String key = cacheKey(file);
+
+        String cached = cache.get(key);
+        if (cached != null) {
+            return new PendingScan(key, cached, null);
+        }
+        if (persistent) {
+            cached = findPersisted(key);
+            if (cached != null) {
+                cache.put(key, cached);
+                return new PendingScan(key, cached, null);
+            }
+        }
+        return new PendingScan(key, null, receiptImageService.prepare(file));
+    }
+
+    // Slow part: the AI round trip, skipped when prepare() found a cached result
+    public String complete(PendingScan pending) {
+        if (pending.isCached()) {
+            return pending.cachedResult();
+        }
+        ReceiptImageService.PreparedImage image = pending.image();
+        String result = aiService.scanReceiptImage(image.bytes(), image.mimeType());
+        if (isCacheable(result)) {
+            cache.put(pending.key(), result);
+            if (persistent) {
+                persist(pending.key(), result);
+            }
+        }
+        return result;
+    }
+
+    // Hashes the original upload as it streams, so a hit never decodes the image
+    private String cacheKey(MultipartFile file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = file.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        digest.update(AIService.RECEIPT_PROMPT_VERSION.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE ships SHA-256
+        }
+    }
+
+    /**
+     * AIService reports problems as {"error": ...} rather than throwing. Returns
+     * that message, or "Could not parse receipt" for non-JSON output, or null
+     * when the result is a usable scan.
+     */
+    public String errorOf(String result) {
+        try {
+            JsonNode node = objectMapper.readTree(result);
+            if (node == null || !node.isObject()) {
+                return "Could not parse receipt";
+            }
+            return node.has("error") ? node.get("error").asText() : null;
+        } catch (Exception e) {
+            return "Could not parse receipt";
+        }
+    }
+
+    // Only well-formed results without an "error" field are worth remembering
+    private boolean isCacheable(String result) {
+        return errorOf(result) == null;
+    }
+
+    // The persistent tier is best effort: Mongo trouble must not fail a scan
+    private String findPersisted(String key) {
+        try {
+            return receiptScanRepository.findById(key).map(ReceiptScan::getResult).orElse(null);
+        } catch (Exception e) {
+            System.err.println("Receipt scan cache lookup failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void persist(String key, String result) {
+        try {
+            ReceiptScan scan = new ReceiptScan();
+            scan.setId(key);
+            scan.setResult(result);
+            scan.setCreatedAt(Instant.now());
+            receiptScanRepository.save(scan);
+        } catch (Exception e) {
+            System.err.println("Receipt scan cache write failed: " + e.getMessage());
+        }
+    }
+}
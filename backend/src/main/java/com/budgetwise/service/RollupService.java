@@ -0,0 +1,231 @@
+package com.budgetwise.service;
+
+import com.budgetwise.model.Expense;
+import com.budgetwise.model.MonthlyRollup;
+import com.budgetwise.repository.MonthlyRollupRepository;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Maintains one pre-aggregated document per user per month in "monthly_rollups".
+ * Writes apply $inc deltas with an upsert, so each change is a single atomic
+ * update; rebuild() recomputes everything from the raw collections if the
+ * counters ever drift (e.g. after a failed write or a manual data fix).
+ */
+@Service
+public class RollupService {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MonthlyRollupRepository rollupRepository;
+
+    @Value("${rollups.rebuild-on-startup:false}")
+    private boolean rebuildOnStartup;
+
+    public List<MonthlyRollup> getMonthlyRollups(String userId, String fromMonth, String toMonth) {
+        Range<String> months = Range.of(
+                fromMonth != null ? Range.Bound.inclusive(YearMonth.parse(fromMonth).toString()) : Range.Bound.unbounded(),
+                toMonth != null ? Range.Bound.inclusive(YearMonth.parse(toMonth).toString()) : Range.Bound.unbounded());
+        return rollupRepository.findByUserIdAndMonthBetween(userId, months, Sort.by("month"));
+    }
+
+    // sign is +1 when a row is added and -1 when it is removed
+    public void recordExpense(String userId, LocalDate date, String category, Double amount, int sign) {
+        if (userId == null || date == null) {
+            return;
+        }
+        double value = amount != null ? amount * sign : 0;
+        String categoryPath = "categories." + categoryKey(category);
+        Update update = new Update()
+                .inc("expenseTotal", value)
+                .inc("expenseCount", sign)
+                .inc(categoryPath + ".total", value)
+                .inc(categoryPath + ".count", sign);
+        apply(userId, YearMonth.from(date).toString(), update);
+    }
+
+    // Folds many row changes into one upsert per affected month, sent as a single bulk write
+    public void recordExpenseChanges(String userId, List<Expense> removed, List<Expense> added) {
+        Map<String, Map<String, Number>> deltas = new HashMap<>();
+        removed.forEach(e -> addExpenseDelta(deltas, e, -1));
+        added.forEach(e -> addExpenseDelta(deltas, e, 1));
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MonthlyRollup.class);
+        deltas.forEach((month, fields) -> {
+            Update update = new Update().setOnInsert("userId", userId).setOnInsert("month", month);
+            fields.forEach(update::inc);
+            bulk.upsert(Query.query(Criteria.where("_id").is(rollupId(userId, month))), update);
+        });
+        try {
+            bulk.execute();
+        } catch (Exception e) {
+            System.err.println("Failed to update monthly rollups for " + userId + ": " + e.getMessage());
+        }
+    }
+
+    private static void addExpenseDelta(Map<String, Map<String, Number>> deltas, Expense expense, int sign) {
+        if (expense.getDate() == null) {
+            return;
+        }
+        double value = expense.getAmount() != null ? expense.getAmount() * sign : 0;
+        String categoryPath = "categories." + categoryKey(expense.getCategory());
+        Map<String, Number> fields = deltas.computeIfAbsent(YearMonth.from(expense.getDate()).toString(),
+                month -> new HashMap<>());
+        fields.merge("expenseTotal", value, RollupService::sum);
+        fields.merge("expenseCount", (long) sign, RollupService::sum);
+        fields.merge(categoryPath + ".total", value, RollupService::sum);
+        fields.merge(categoryPath + ".count", (long) sign, RollupService::sum);
+    }
+
+    private static Number sum(Number a, Number b) {
+        return a instanceof Long ? (Number) (a.longValue() + b.longValue()) : (Number) (a.doubleValue() + b.doubleValue());
+    }
+
+    public void recordIncome(String userId, LocalDate date, Double amount, int sign) {
+        if (userId == null || date == null) {
+            return;
+        }
+        double value = amount != null ? amount * sign : 0;
+        Update update = new Update()
+                .inc("incomeTotal", value)
+                .inc("incomeCount", sign);
+        apply(userId, YearMonth.from(date).toString(), update);
+    }
+
+    private void apply(String userId, String month, Update update) {
+        update.setOnInsert("userId", userId).setOnInsert("month", month);
+        try {
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(rollupId(userId, month))), update,
+                    MonthlyRollup.class);
+        } catch (Exception e) {
+            // The source write already succeeded; a rebuild repairs the rollup
+            System.err.println("Failed to update monthly rollup " + rollupId(userId, month) + ": " + e.getMessage());
+        }
+    }
+
+    @Order(1)
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartupIfRequested() {
+        if (rebuildOnStartup) {
+            rebuild(null);
+        }
+    }
+
+    /**
+     * Recomputes rollups from expenses and incomes, for one user or for everyone
+     * when userId is null. Rows are grouped server-side and streamed back, so the
+     * cost is one pass over the raw data and O(months x categories) writes.
+     */
+    public void rebuild(String userId) {
+        if (userId != null) {
+            rollupRepository.deleteByUserId(userId);
+        } else {
+            rollupRepository.deleteAll();
+        }
+
+        Criteria scope = Criteria.where("date").type(JsonSchemaObject.Type.DATE);
+        if (userId != null) {
+            scope.and("userId").is(userId);
+        }
+
+        Aggregation expenses = Aggregation.newAggregation(
+                Aggregation.match(scope),
+                Aggregation.project("userId", "amount")
+                        .and(DateOperators.DateToString.dateOf("date").toString("%Y-%m")).as("month")
+                        .and(ConditionalOperators.ifNull("category").then("General")).as("category"),
+                Aggregation.group("userId", "month", "category")
+                        .sum("amount").as("total")
+                        .count().as("count"));
+        writeGroups(expenses, "expenses", (group, row) -> {
+            String categoryPath = "categories." + categoryKey(group.getString("category"));
+            return new Update()
+                    .inc("expenseTotal", row.get("total", Number.class).doubleValue())
+                    .inc("expenseCount", row.get("count", Number.class).longValue())
+                    .inc(categoryPath + ".total", row.get("total", Number.class).doubleValue())
+                    .inc(categoryPath + ".count", row.get("count", Number.class).longValue());
+        });
+
+        Aggregation incomes = Aggregation.newAggregation(
+                Aggregation.match(scope),
+                Aggregation.project("userId", "amount")
+                        .and(DateOperators.DateToString.dateOf("date").toString("%Y-%m")).as("month"),
+                Aggregation.group("userId", "month")
+                        .sum("amount").as("total")
+                        .count().as("count"));
+        writeGroups(incomes, "incomes", (group, row) -> new Update()
+                .inc("incomeTotal", row.get("total", Number.class).doubleValue())
+                .inc("incomeCount", row.get("count", Number.class).longValue()));
+    }
+
+    private interface GroupUpdate {
+        Update toUpdate(Document group, Document row);
+    }
+
+    private void writeGroups(Aggregation aggregation, String collection, GroupUpdate mapper) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MonthlyRollup.class);
+        int pending = 0;
+        try (Stream<Document> rows = mongoTemplate.aggregateStream(aggregation, collection, Document.class)) {
+            Iterator<Document> it = rows.iterator();
+            while (it.hasNext()) {
+                Document row = it.next();
+                Document group = row.get("_id", Document.class);
+                String userId = group.getString("userId");
+                String month = group.getString("month");
+                Update update = mapper.toUpdate(group, row)
+                        .setOnInsert("userId", userId)
+                        .setOnInsert("month", month);
+                bulk.upsert(Query.query(Criteria.where("_id").is(rollupId(userId, month))), update);
+                if (++pending == BATCH_SIZE) {
+                    bulk.execute();
+                    pending = 0;
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MonthlyRollup.class);
+                }
+            }
+        }
+        if (pending > 0) {
+            bulk.execute();
+        }
+    }
+
+    private static String rollupId(String userId, String month) {
+        return userId + ":" + month;
+    }
+
+    // Map keys become field paths, so '.' and a leading '$' cannot appear in them
+    static String categoryKey(String category) {
+        String key = category == null || category.isBlank() ? "General" : category.trim();
+        key = key.replace('.', '_');
+        return key.startsWith("$") ? "_" + key.substring(1) : key;
+    }
+}
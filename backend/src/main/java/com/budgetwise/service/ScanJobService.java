@@ -0,0 +1,172 @@
+package com.budgetwise.service;
+
+import com.budgetwise.dto.ScanJobDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Receipt scans as background jobs. Submitting does the cheap work (hashing,
+ * cache lookup, downscaling) on the request thread and queues the AI call on
+ * the bounded receiptScanExecutor; clients poll the job or subscribe to it.
+ * Jobs are kept in memory and forgotten receipts.jobs.retention-minutes after
+ * they finish: expired jobs read as not found and are swept once a minute.
+ */
+@Service
+public class ScanJobService {
+
+    public static final String QUEUED = "QUEUED";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    private static final long PURGE_INTERVAL_MILLIS = 60_000;
+
+    public static class QueueFullException extends RuntimeException {
+        public QueueFullException() {
+            super("Receipt scanner is busy, please try again shortly");
+        }
+    }
+
+    private static class ScanJob {
+        private final String id = UUID.randomUUID().toString();
+        private final String userId;
+        private final Instant submittedAt = Instant.now();
+        private final CompletableFuture<ScanJob> completion = new CompletableFuture<>();
+        private volatile String status = QUEUED;
+        private volatile String result;
+        private volatile String error;
+        private volatile Instant finishedAt;
+
+        private ScanJob(String userId) {
+            this.userId = userId;
+        }
+    }
+
+    @Autowired
+    private ReceiptScanService receiptScanService;
+
+    @Autowired
+    private MerchantCategoryService merchantCategoryService;
+
+    @Autowired
+    @Qualifier("receiptScanExecutor")
+    private ThreadPoolTaskExecutor executor;
+
+    @Value("${receipts.jobs.retention-minutes:10}")
+    private long retentionMinutes;
+
+    private final Map<String, ScanJob> jobs = new ConcurrentHashMap<>();
+
+    private final Timer waitTimer;
+    private final Timer runTimer;
+    private final Counter rejected;
+
+    public ScanJobService(MeterRegistry meterRegistry) {
+        this.waitTimer = Timer.builder("receipts.jobs.wait")
+                .description("Time scan jobs spend queued before a worker picks them up")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("receipts.jobs.run").register(meterRegistry);
+        this.rejected = Counter.builder("receipts.jobs.rejected").register(meterRegistry);
+    }
+
+    public ScanJobDto.JobStatus submit(String userId, MultipartFile file) throws IOException {
+        ScanJob job = new ScanJob(userId);
+        ReceiptScanService.PendingScan pending = receiptScanService.prepare(file);
+        jobs.put(job.id, job);
+
+        if (pending.isCached()) {
+            finish(job, pending.cachedResult());
+            return toStatus(job);
+        }
+        try {
+            executor.execute(() -> run(job, pending));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.id);
+            rejected.increment();
+            throw new QueueFullException();
+        }
+        return toStatus(job);
+    }
+
+    public ScanJobDto.JobStatus getJob(String userId, String jobId) {
+        return toStatus(findJob(userId, jobId));
+    }
+
+    // Completes with the final status; already complete for finished jobs
+    public CompletableFuture<ScanJobDto.JobStatus> awaitJob(String userId, String jobId) {
+        return findJob(userId, jobId).completion.thenApply(this::toStatus);
+    }
+
+    private ScanJob findJob(String userId, String jobId) {
+        ScanJob job = jobs.get(jobId);
+        if (job == null || !job.userId.equals(userId) || isExpired(job, retentionCutoff())) {
+            throw new RuntimeException("Scan job not found");
+        }
+        return job;
+    }
+
+    private void run(ScanJob job, ReceiptScanService.PendingScan pending) {
+        waitTimer.record(Duration.between(job.submittedAt, Instant.now()));
+        job.status = RUNNING;
+        try {
+            String result = runTimer.record(() -> receiptScanService.complete(pending));
+            finish(job, result);
+        } catch (Exception e) {
+            fail(job, e.getMessage() != null ? e.getMessage() : "Scan failed");
+        }
+    }
+
+    private void finish(ScanJob job, String result) {
+        String error = receiptScanService.errorOf(result);
+        if (error != null) {
+            fail(job, error);
+            return;
+        }
+        job.result = merchantCategoryService.applyToScan(job.userId, result);
+        job.status = DONE;
+        job.finishedAt = Instant.now();
+        job.completion.complete(job);
+    }
+
+    private void fail(ScanJob job, String error) {
+        job.error = error;
+        job.status = FAILED;
+        job.finishedAt = Instant.now();
+        job.completion.complete(job);
+    }
+
+    @Scheduled(fixedDelay = PURGE_INTERVAL_MILLIS)
+    public void purgeFinished() {
+        Instant cutoff = retentionCutoff();
+        jobs.values().removeIf(job -> isExpired(job, cutoff));
+    }
+
+    private Instant retentionCutoff() {
+        return Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+    }
+
+    private static boolean isExpired(ScanJob job, Instant cutoff) {
+        return job.finishedAt != null && job.finishedAt.isBefore(cutoff);
+    }
+
+    private ScanJobDto.JobStatus toStatus(ScanJob job) {
+        return new ScanJobDto.JobStatus(job.id, job.status, job.result, job.error, job.submittedAt, job.finishedAt);
+    }
+}
@@ -4,9 +4,15 @@ import com.budgetwise.dto.AuthDto;
 import com.budgetwise.dto.ProfileDto;
 import com.budgetwise.model.User;
 import com.budgetwise.repository.UserRepository;
+import com.budgetwise.security.PasswordHasher;
+import com.budgetwise.security.PrincipalCache;
 import com.budgetwise.util.JwtUtil;
+import io.jsonwebtoken.JwtException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.beans.factory.annotation.Value;
@@ -27,7 +33,10 @@ public class UserService {
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
 
     @Autowired
     private JwtUtil jwtUtil;
@@ -41,6 +50,9 @@ public class UserService {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     @Value("${file.upload-dir}")
     private String uploadDir;
 
@@ -64,7 +76,7 @@ public class UserService {
         user.setName(request.getName());
         user.setEmail(request.getEmail());
         user.setUsername(request.getUsername());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHasher.encode(request.getPassword()));
         user.setMobile(request.getMobile());
         user.setCreatedAt(LocalDateTime.now());
         user.setUpdatedAt(LocalDateTime.now());
@@ -86,14 +98,15 @@ public class UserService {
         userRepository.save(user);
 
         // Initialize Default Categories
-        categoryService.initDefaultCategories(user);
+        categoryService.initDefaultCategories(user.getId());
 
         try {
             // TRIGGER OTP IMMEDIATELY
             otpService.generateOtp(user.getEmail(), true);
         } catch (Exception e) {
-            // If OTP generation fails (e.g., due to email sending issues), delete the user
-            // to allow retrying later
+            // The email itself goes out in the background (see EmailDispatcher); this only
+            // fails if the OTP or its queued email could not be stored. Delete the user so
+            // the signup can be retried
             userRepository.delete(user);
             return new AuthDto.AuthResponse(false,
                     "Signup failed: Unable to send verification email. Please try again later.", null, null);
@@ -106,19 +119,20 @@ public class UserService {
 
     public AuthDto.AuthResponse login(AuthDto.LoginRequest request) {
         // Find by Email or Username
-        Optional<User> userOpt = userRepository.findByEmail(request.getIdentifier());
-        if (userOpt.isEmpty()) {
-            userOpt = userRepository.findByUsername(request.getIdentifier());
-        }
+        Optional<User> userOpt = userRepository.findFirstByEmailOrUsername(request.getIdentifier(),
+                request.getIdentifier());
 
         if (userOpt.isPresent()) {
             User user = userOpt.get();
-            if (passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+            if (passwordHasher.matches(request.getPassword(), user.getPassword())) {
+                if (passwordHasher.upgradeEncoding(user.getPassword())) {
+                    rehashInBackground(user, request.getPassword());
+                }
 
                 // ALLOW login even if unverified (Frontend will handle restriction)
                 // if (!user.isEmailVerified()) { ... }
 
-                String token = jwtUtil.generateToken(user.getEmail());
+                String token = jwtUtil.generateToken(user.getEmail(), user.getId());
                 return new AuthDto.AuthResponse(true, "Login successful", token, mapToUserDto(user));
             }
         }
@@ -126,16 +140,36 @@ public class UserService {
         return new AuthDto.AuthResponse(false, "Invalid credentials", null, null);
     }
 
+    /**
+     * Stores a hash at the current cost without delaying the login. The write
+     * only applies if the stored hash is still the one just verified, so a
+     * password changed in the meantime is never overwritten. If the hashing
+     * pool is busy, the next login tries again.
+     */
+    private void rehashInBackground(User user, String rawPassword) {
+        String oldHash = user.getPassword();
+        passwordHasher.encodeAsync(rawPassword).thenAccept(newHash -> {
+            Query unchanged = Query.query(Criteria.where("id").is(user.getId()).and("password").is(oldHash));
+            if (mongoTemplate.updateFirst(unchanged, new Update().set("password", newHash), User.class)
+                    .getModifiedCount() > 0) {
+                principalCache.evictUser(user.getId());
+            }
+        }).exceptionally(e -> {
+            System.err.println("Password rehash skipped for " + user.getId() + ": " + e.getMessage());
+            return null;
+        });
+    }
+
     // --- Profile Management ---
 
-    public ProfileDto.ProfileResponse getProfile(String username) {
-        User user = getUser(username);
+    public ProfileDto.ProfileResponse getProfile(String userId) {
+        User user = getUserById(userId);
         return new ProfileDto.ProfileResponse(true, "Profile loaded", mapToUserProfile(user));
     }
 
-    public ProfileDto.ProfileResponse updateProfile(String username, ProfileDto.UpdateProfileRequest request,
+    public ProfileDto.ProfileResponse updateProfile(String userId, ProfileDto.UpdateProfileRequest request,
             MultipartFile profileImage, MultipartFile backgroundImage) {
-        User user = getUser(username);
+        User user = getUserById(userId);
         if (request.getName() != null && !request.getName().isEmpty()) {
             user.setName(request.getName());
         }
@@ -194,10 +228,10 @@ public class UserService {
                         null);
             }
             if (request.getCurrentPassword() == null
-                    || !passwordEncoder.matches(request.getCurrentPassword(), user.getPassword())) {
+                    || !passwordHasher.matches(request.getCurrentPassword(), user.getPassword())) {
                 return new ProfileDto.ProfileResponse(false, "Invalid current password", null);
             }
-            user.setPassword(passwordEncoder.encode(request.getNewPassword()));
+            user.setPassword(passwordHasher.encode(request.getNewPassword()));
         }
 
         // Handle Profile Image Update
@@ -232,22 +266,24 @@ public class UserService {
 
         user.setUpdatedAt(LocalDateTime.now());
         userRepository.save(user);
+        principalCache.evictUser(user.getId());
         return new ProfileDto.ProfileResponse(true, "Profile updated successfully", mapToUserProfile(user));
     }
 
-    public ProfileDto.ProfileResponse deleteProfile(String username, String password) {
-        User user = getUser(username);
-        if (!passwordEncoder.matches(password, user.getPassword())) {
+    public ProfileDto.ProfileResponse deleteProfile(String userId, String password) {
+        User user = getUserById(userId);
+        if (!passwordHasher.matches(password, user.getPassword())) {
             return new ProfileDto.ProfileResponse(false, "Invalid password", null);
         }
         userRepository.delete(user);
+        principalCache.evictUser(user.getId());
         return new ProfileDto.ProfileResponse(true, "Account deleted", null);
     }
 
     // --- OTP Services ---
 
-    public void sendOtp(String username, String type) {
-        User user = getUser(username);
+    public void sendOtp(String userId, String type) {
+        User user = getUserById(userId);
         String identifier = type.equalsIgnoreCase("email") ? user.getEmail() : user.getMobile();
         otpService.generateOtp(identifier, type.equalsIgnoreCase("email"));
     }
@@ -305,15 +341,19 @@ public class UserService {
     }
 
     public void resetPasswordWithToken(String token, String newPassword) {
-        String email = jwtUtil.extractUsername(token); // Token subject is email
-
-        // Validate Token structure & expiry
-        if (email == null || jwtUtil.isTokenExpired(token)) {
+        // One parse checks signature and expiry; the subject is the email
+        JwtUtil.VerifiedToken verified;
+        try {
+            verified = jwtUtil.verify(token);
+        } catch (JwtException | IllegalArgumentException e) {
             throw new RuntimeException("Invalid or expired reset token");
         }
 
-        // Check "purpose" claim if possible, but extractUsername validates
-        // signature/expiry enough for now.
+        // Session tokens must not be usable as reset tokens
+        if (!JwtUtil.PASSWORD_RESET_PURPOSE.equals(verified.purpose())) {
+            throw new RuntimeException("Invalid or expired reset token");
+        }
+        String email = verified.subject();
 
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -323,8 +363,9 @@ public class UserService {
                     "Password must be 8+ chars: at least one uppercase, lowercase, number, and special symbol.");
         }
 
-        user.setPassword(passwordEncoder.encode(newPassword));
+        user.setPassword(passwordHasher.encode(newPassword));
         userRepository.save(user);
+        principalCache.evictUser(user.getId());
 
         // Send Confirmation Email
         emailService.sendSimpleEmail(
@@ -342,9 +383,13 @@ public class UserService {
         return password.matches(regex);
     }
 
-    private User getUser(String username) {
-        return userRepository.findByEmail(username)
-                .or(() -> userRepository.findByUsername(username))
+    private User getUser(String identifier) {
+        return userRepository.findFirstByEmailOrUsername(identifier, identifier)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+    }
+
+    private User getUserById(String userId) {
+        return userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
     }
 
@@ -0,0 +1,76 @@
+package com.budgetwise.service;
+
+import com.budgetwise.model.CollectionVersion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+/**
+ * Per-user, per-collection change counters used as strong ETags for the list
+ * endpoints. Every mutation bumps the counter of the collection it touched, so
+ * an unchanged counter means the client's copy is current and a 304 can be
+ * answered from this single small document.
+ */
+@Service
+public class VersionService {
+
+    public static final String EXPENSES = "expenses";
+    public static final String INCOMES = "incomes";
+    public static final String GOALS = "goals";
+    public static final String CATEGORIES = "categories";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Best-effort, like the other side effects of a write: the write itself has
+     * already succeeded, so a failure here is logged rather than reported to the
+     * client. Callers bump last, after rollups and other derived data.
+     */
+    public void bump(String userId, String collection) {
+        Update update = new Update()
+                .inc("versions." + collection, 1)
+                .setOnInsert("epoch", newEpoch());
+        try {
+            mongoTemplate.upsert(byUser(userId), update, CollectionVersion.class);
+        } catch (Exception e) {
+            System.err.println("Failed to record change to " + collection + " for " + userId + ": " + e.getMessage());
+            invalidate(userId);
+        }
+    }
+
+    // A new epoch changes every ETag of the user, so no client keeps data the lost bump should have refreshed
+    private void invalidate(String userId) {
+        try {
+            mongoTemplate.upsert(byUser(userId), new Update().set("epoch", newEpoch()), CollectionVersion.class);
+        } catch (Exception e) {
+            System.err.println("Failed to reset ETags for " + userId + ": " + e.getMessage());
+        }
+    }
+
+    public String etag(String userId, String collection) {
+        Query query = byUser(userId);
+        query.fields().include("epoch").include("versions." + collection);
+        CollectionVersion version = mongoTemplate.findOne(query, CollectionVersion.class);
+        if (version == null) {
+            mongoTemplate.upsert(byUser(userId), new Update().setOnInsert("epoch", newEpoch()),
+                    CollectionVersion.class);
+            version = mongoTemplate.findOne(query, CollectionVersion.class);
+        }
+        long counter = version.getVersions() != null ? version.getVersions().getOrDefault(collection, 0L) : 0L;
+        return "\"" + version.getEpoch() + "-" + collection + "-" + counter + "\"";
+    }
+
+    private static Query byUser(String userId) {
+        return Query.query(Criteria.where("_id").is(userId));
+    }
+
+    private static String newEpoch() {
+        return UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,25 @@
+package com.budgetwise.util;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * ETag revalidation for per-user list endpoints. Responses are marked
+ * "private, no-cache" (instead of Spring Security's default no-store) so
+ * clients keep them and revalidate with If-None-Match on every use.
+ */
+public final class ConditionalGet {
+
+    private ConditionalGet() {
+    }
+
+    // Returns true when a 304 has been prepared and the handler should return null
+    public static boolean notModified(ServletWebRequest request, String etag) {
+        HttpServletResponse response = request.getResponse();
+        if (response != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        }
+        return request.checkNotModified(etag);
+    }
+}
@@ -0,0 +1,86 @@
+package com.budgetwise.util;
+
+import com.budgetwise.model.Expense;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes expenses row by row as they come off the cursor; nothing but the
+ * current row and the output buffer is held in memory.
+ */
+public final class ExpenseExportWriter {
+
+    private static final int FLUSH_EVERY = 1000;
+
+    private ExpenseExportWriter() {
+    }
+
+    public static void writeCsv(Stream<Expense> expenses, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("id,date,title,category,amount\n");
+        int written = 0;
+        Iterator<Expense> it = expenses.iterator();
+        while (it.hasNext()) {
+            Expense expense = it.next();
+            writer.write(csv(expense.getId()));
+            writer.write(',');
+            writer.write(expense.getDate() != null ? expense.getDate().toString() : "");
+            writer.write(',');
+            writer.write(csv(expense.getTitle()));
+            writer.write(',');
+            writer.write(csv(expense.getCategory()));
+            writer.write(',');
+            writer.write(expense.getAmount() != null ? expense.getAmount().toString() : "");
+            writer.write('\n');
+            if (++written % FLUSH_EVERY == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+    }
+
+    public static void writeNdjson(Stream<Expense> expenses, OutputStream out, ObjectMapper objectMapper)
+            throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(Expense.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        OutputStream buffered = new BufferedOutputStream(out);
+        int written = 0;
+        Iterator<Expense> it = expenses.iterator();
+        while (it.hasNext()) {
+            writer.writeValue(buffered, it.next());
+            buffered.write('\n');
+            if (++written % FLUSH_EVERY == 0) {
+                buffered.flush();
+            }
+        }
+        buffered.flush();
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        // Stop spreadsheets from evaluating user-entered text as a formula
+        if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+                || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+}
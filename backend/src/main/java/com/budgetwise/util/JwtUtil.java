@@ -1,56 +1,70 @@
 package com.budgetwise.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
 
 @Component
 public class JwtUtil {
 
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String PURPOSE_CLAIM = "purpose";
+    public static final String PASSWORD_RESET_PURPOSE = "password_reset";
+
     @Value("${jwt.secret}")
     private String secret;
 
     @Value("${jwt.expiration}")
     private Long expiration;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
-    }
-
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
-    }
-
-    public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
+    // Both are immutable and thread-safe, so they are built once and shared
+    private SecretKey signingKey;
+    private JwtParser parser;
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    /**
+     * The claims of a token whose signature and expiry have been checked.
+     * userId and purpose are null when the token does not carry them.
+     */
+    public record VerifiedToken(String subject, String userId, String purpose, Instant expiresAt) {
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    @PostConstruct
+    void init() {
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
 
-    public Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    /**
+     * Parses and verifies the token exactly once. Throws JwtException (including
+     * ExpiredJwtException) or IllegalArgumentException if it is not usable.
+     */
+    public VerifiedToken verify(String token) {
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        if (claims.getSubject() == null) {
+            throw new JwtException("Token has no subject");
+        }
+        Date expiresAt = claims.getExpiration();
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get(USER_ID_CLAIM, String.class),
+                claims.get(PURPOSE_CLAIM, String.class),
+                expiresAt != null ? expiresAt.toInstant() : null);
     }
 
     public String generateToken(UserDetails userDetails) {
@@ -62,10 +76,16 @@ public class JwtUtil {
         Map<String, Object> claims = new HashMap<>();
         return createToken(claims, username, expiration);
     }
+
+    public String generateToken(String email, String userId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(USER_ID_CLAIM, userId);
+        return createToken(claims, email, expiration);
+    }
     
     public String generateResetToken(String email) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("purpose", "password_reset");
+        claims.put(PURPOSE_CLAIM, PASSWORD_RESET_PURPOSE);
         // 10 minutes expiry
         return createToken(claims, email, 1000 * 60 * 10);
     }
@@ -76,12 +96,7 @@ public class JwtUtil {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiryDuration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
-
-    public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
-    }
 }
@@ -0,0 +1,51 @@
+package com.budgetwise.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor: the sort key and id of the last row a client has seen,
+ * packed into a URL-safe token so clients never depend on its layout.
+ */
+public final class PageCursor {
+
+    private static final char SEPARATOR = '|';
+
+    private final String key;
+    private final String id;
+
+    private PageCursor(String key, String id) {
+        this.key = key;
+        this.id = id;
+    }
+
+    public static PageCursor of(Object key, String id) {
+        return new PageCursor(key != null ? key.toString() : "", id);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String encode() {
+        byte[] raw = (key + SEPARATOR + id).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int split = raw.lastIndexOf(SEPARATOR);
+            if (split < 0 || split == raw.length() - 1) {
+                throw new IllegalArgumentException();
+            }
+            return new PageCursor(raw.substring(0, split), raw.substring(split + 1));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+}
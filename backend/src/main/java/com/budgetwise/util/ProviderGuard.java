@@ -0,0 +1,188 @@
+package com.budgetwise.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker plus concurrency bulkhead for one external provider.
+ * After failureThreshold consecutive failures the circuit opens and calls
+ * fail fast with ProviderUnavailableException for openDuration; then a single
+ * trial call is let through (half-open) and its outcome closes or re-opens
+ * the circuit. Independently, at most maxConcurrent calls run at once.
+ */
+public class ProviderGuard {
+
+    public static class ProviderUnavailableException extends RuntimeException {
+        public ProviderUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final String displayName;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Semaphore bulkhead;
+    private final long bulkheadWaitMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean trialInFlight;
+
+    private final Counter rejectedOpen;
+    private final Counter rejectedBulkhead;
+
+    public ProviderGuard(String name, String displayName, int failureThreshold, Duration openDuration, int maxConcurrent,
+            Duration bulkheadWait, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.displayName = displayName;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.bulkheadWaitMillis = bulkheadWait.toMillis();
+
+        Gauge.builder("provider.circuit.state", this, guard -> guard.getState().ordinal())
+                .description("0 closed, 1 open, 2 half-open")
+                .tag("provider", name).register(meterRegistry);
+        Gauge.builder("provider.bulkhead.in_use", bulkhead, b -> maxConcurrent - b.availablePermits())
+                .tag("provider", name).register(meterRegistry);
+        this.rejectedOpen = Counter.builder("provider.rejected")
+                .tag("provider", name).tag("reason", "circuit_open").register(meterRegistry);
+        this.rejectedBulkhead = Counter.builder("provider.rejected")
+                .tag("provider", name).tag("reason", "bulkhead_full").register(meterRegistry);
+    }
+
+    /**
+     * A claimed slot: one of success(), failure() or abandon() must be called;
+     * later calls are ignored.
+     */
+    public final class Permit {
+        private final boolean trial;
+        private boolean released;
+
+        private Permit(boolean trial) {
+            this.trial = trial;
+        }
+
+        public void success() {
+            release(true);
+        }
+
+        public void failure(Throwable error) {
+            release(!countsAsFailure(error));
+        }
+
+        // The caller gave up before the outcome was known (e.g. the client disconnected)
+        public void abandon() {
+            release(null);
+        }
+
+        private void release(Boolean ok) {
+            synchronized (ProviderGuard.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                if (ok != null) {
+                    onResult(trial, ok);
+                } else if (trial) {
+                    trialInFlight = false; // stays half-open; the next call is the trial
+                }
+            }
+            bulkhead.release();
+        }
+    }
+
+    public <T> T call(Supplier<T> action) {
+        Permit permit = acquire();
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            permit.failure(e);
+            throw e;
+        }
+        permit.success();
+        return result;
+    }
+
+    public Permit acquire() {
+        boolean trial = admit();
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            synchronized (this) {
+                if (trial) {
+                    trialInFlight = false;
+                }
+            }
+            rejectedBulkhead.increment();
+            throw new ProviderUnavailableException(displayName + " is busy, please try again shortly");
+        }
+        return new Permit(trial);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    // Returns true when the caller is the half-open trial call
+    private synchronized boolean admit() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.CLOSED) {
+            return false;
+        }
+        if (state == State.HALF_OPEN && !trialInFlight) {
+            trialInFlight = true;
+            return true;
+        }
+        rejectedOpen.increment();
+        throw new ProviderUnavailableException(displayName + " is temporarily unavailable, please try again shortly");
+    }
+
+    private void onResult(boolean trial, boolean ok) {
+        if (trial) {
+            trialInFlight = false;
+        }
+        if (ok) {
+            consecutiveFailures = 0;
+            if (trial) {
+                state = State.CLOSED;
+            }
+            return;
+        }
+        consecutiveFailures++;
+        if (trial || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            if (state != State.OPEN) {
+                System.err.println("Circuit for " + name + " opened after " + consecutiveFailures + " failures");
+            }
+            state = State.OPEN;
+            openedAtNanos = System.nanoTime();
+        }
+    }
+
+    // Client errors (bad request, auth) say nothing about provider health; 429 does
+    private static boolean countsAsFailure(Throwable error) {
+        if (error instanceof HttpClientErrorException clientError) {
+            return clientError.getStatusCode().value() == 429;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,116 @@
+package com.budgetwise.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets per key: up to capacity requests at once, refilled at one
+ * token per refillInterval. Each bucket is a single long (the GCRA
+ * "theoretical arrival time") updated by compare-and-set, so checks never
+ * block. Keys are spread over stripes, each capped at maxKeys / STRIPES
+ * entries; a full stripe first drops buckets that have refilled completely
+ * (no state is lost) and only then arbitrary ones.
+ */
+public class RateLimiter {
+
+    private static final int STRIPES = 16;
+
+    public record Decision(boolean allowed, long retryAfterSeconds) {
+    }
+
+    private final long intervalNanos;
+    private final long burstNanos; // how far ahead of now the arrival time may run
+    private final int maxKeysPerStripe;
+    private final Map<String, AtomicLong>[] stripes;
+
+    private final Counter allowed;
+    private final Counter rejected;
+    private final AtomicLong evictions = new AtomicLong();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public RateLimiter(String name, int capacity, Duration refillInterval, int maxKeys, MeterRegistry meterRegistry) {
+        if (capacity <= 0 || refillInterval.isZero() || refillInterval.isNegative()) {
+            throw new IllegalArgumentException("capacity and refillInterval must be positive");
+        }
+        this.intervalNanos = refillInterval.toNanos();
+        this.burstNanos = intervalNanos * capacity;
+        this.maxKeysPerStripe = Math.max(1, maxKeys / STRIPES);
+        this.stripes = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+
+        this.allowed = Counter.builder("ratelimit.requests")
+                .tag("limiter", name).tag("result", "allowed").register(meterRegistry);
+        this.rejected = Counter.builder("ratelimit.requests")
+                .tag("limiter", name).tag("result", "rejected").register(meterRegistry);
+        FunctionCounter.builder("ratelimit.evictions", evictions, AtomicLong::get)
+                .tag("limiter", name).register(meterRegistry);
+        Gauge.builder("ratelimit.keys", this, RateLimiter::size)
+                .tag("limiter", name).register(meterRegistry);
+    }
+
+    public Decision tryAcquire(String key) {
+        Map<String, AtomicLong> stripe = stripes[Math.floorMod(key.hashCode(), STRIPES)];
+        AtomicLong arrival = stripe.get(key);
+        if (arrival == null) {
+            if (stripe.size() >= maxKeysPerStripe) {
+                shrink(stripe);
+            }
+            arrival = stripe.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE));
+        }
+
+        while (true) {
+            long now = System.nanoTime();
+            long current = arrival.get();
+            long base = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            long next = base + intervalNanos;
+            if (next - now > burstNanos) {
+                rejected.increment();
+                long waitNanos = next - now - burstNanos;
+                return new Decision(false, Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L));
+            }
+            if (arrival.compareAndSet(current, next)) {
+                allowed.increment();
+                return new Decision(true, 0);
+            }
+        }
+    }
+
+    private void shrink(Map<String, AtomicLong> stripe) {
+        long now = System.nanoTime();
+        stripe.values().removeIf(arrival -> {
+            long value = arrival.get();
+            boolean refilled = value == Long.MIN_VALUE || value - now <= 0;
+            if (refilled) {
+                evictions.incrementAndGet();
+            }
+            return refilled;
+        });
+        // Still full: every bucket is in use, so forget some; freeing a tenth at once
+        // keeps a flood of new keys from rescanning the stripe on every insert
+        int target = maxKeysPerStripe - Math.max(1, maxKeysPerStripe / 10);
+        Iterator<AtomicLong> it = stripe.values().iterator();
+        while (stripe.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<String, AtomicLong> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,136 @@
+package com.budgetwise.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Small in-process cache: bounded by entry count (least recently used entries
+ * go first) and by age (entries older than the TTL are treated as absent).
+ * All access is synchronized; it is meant for small, hot lookups, not bulk data.
+ */
+public class TtlCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAtNanos) {
+    }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TtlCache(int maxSize, Duration ttl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > TtlCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAtNanos() > 0) {
+            entries.remove(key);
+            evictions.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value();
+    }
+
+    // Like get(), but not counted as a hit or miss
+    public synchronized V peek(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || System.nanoTime() - entry.expiresAtNanos() > 0) {
+            return null;
+        }
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Returns the cached value or loads and caches it. The loader runs outside
+     * the lock, so concurrent misses for one key may each load; the last wins.
+     * Exceptions from the loader propagate and nothing is cached.
+     */
+    public V computeIfAbsent(K key, Function<K, V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateIf(Predicate<V> predicate) {
+        entries.values().removeIf(entry -> predicate.test(entry.value()));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    /** Publishes cache.gets (hit/miss), cache.evictions and cache.size tagged with the cache name. */
+    public TtlCache<K, V> registerMetrics(MeterRegistry registry, String name) {
+        FunctionCounter.builder("cache.gets", this, TtlCache::hitCount)
+                .tag("cache", name).tag("result", "hit").register(registry);
+        FunctionCounter.builder("cache.gets", this, TtlCache::missCount)
+                .tag("cache", name).tag("result", "miss").register(registry);
+        FunctionCounter.builder("cache.evictions", this, TtlCache::evictionCount)
+                .tag("cache", name).register(registry);
+        Gauge.builder("cache.size", this, TtlCache::size)
+                .tag("cache", name).register(registry);
+        return this;
+    }
+}
@@ -0,0 +1,102 @@
+package com.budgetwise.filter;
+
+import com.budgetwise.security.AuthenticatedUser;
+import com.budgetwise.security.PrincipalCache;
+import com.budgetwise.util.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JwtRequestFilterTest {
+
+    private JwtUtil jwtUtil;
+    private PrincipalCache principalCache;
+    private JwtRequestFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "test-secret-that-is-long-enough-for-hs256-signing");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 60_000L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+
+        principalCache = mock(PrincipalCache.class);
+        when(principalCache.resolve("u1", "ann@example.com"))
+                .thenReturn(new AuthenticatedUser("u1", "ann@example.com", "hash"));
+
+        filter = new JwtRequestFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "principalCache", principalCache);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private Authentication filterWith(String authorization) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/expenses");
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest(), "the chain must always continue");
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Test
+    void sessionTokenAuthenticatesWithOrWithoutBearerPrefix() throws Exception {
+        String token = jwtUtil.generateToken("ann@example.com", "u1");
+
+        Authentication bearer = filterWith("Bearer " + token);
+        assertNotNull(bearer);
+        assertEquals("u1", ((AuthenticatedUser) bearer.getPrincipal()).getUserId());
+
+        SecurityContextHolder.clearContext();
+        assertNotNull(filterWith(token));
+    }
+
+    @Test
+    void passwordResetTokenIsNotASessionToken() throws Exception {
+        assertNull(filterWith("Bearer " + jwtUtil.generateResetToken("ann@example.com")));
+        verify(principalCache, never()).resolve(any(), any());
+    }
+
+    @Test
+    void tamperedTokenLeavesRequestUnauthenticated() throws Exception {
+        String token = jwtUtil.generateToken("ann@example.com", "u1");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertNull(filterWith("Bearer " + tampered));
+        verify(principalCache, never()).resolve(any(), any());
+    }
+
+    @Test
+    void expiredTokenLeavesRequestUnauthenticated() throws Exception {
+        ReflectionTestUtils.setField(jwtUtil, "expiration", -1_000L);
+        String expired = jwtUtil.generateToken("ann@example.com", "u1");
+
+        assertNull(filterWith("Bearer " + expired));
+    }
+
+    @Test
+    void missingHeaderLeavesRequestUnauthenticated() throws Exception {
+        assertNull(filterWith(null));
+    }
+}
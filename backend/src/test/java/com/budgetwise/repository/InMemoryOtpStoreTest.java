@@ -0,0 +1,77 @@
+package com.budgetwise.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryOtpStoreTest {
+
+    private final InMemoryOtpStore store = new InMemoryOtpStore();
+
+    @Test
+    void codeCanBeConsumedOnlyOnce() {
+        store.put("ann@example.com", "123456", Duration.ofMinutes(5));
+
+        assertTrue(store.consume("ann@example.com", "123456"));
+        assertFalse(store.consume("ann@example.com", "123456"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void wrongCodeOrIdentifierIsRejectedAndKeepsTheCode() {
+        store.put("ann@example.com", "123456", Duration.ofMinutes(5));
+
+        assertFalse(store.consume("ann@example.com", "654321"));
+        assertFalse(store.consume("ann@example.com", null));
+        assertFalse(store.consume("bob@example.com", "123456"));
+        assertTrue(store.consume("ann@example.com", "123456"));
+    }
+
+    @Test
+    void newCodeReplacesTheOldOne() {
+        store.put("ann@example.com", "111111", Duration.ofMinutes(5));
+        store.put("ann@example.com", "222222", Duration.ofMinutes(5));
+
+        assertFalse(store.consume("ann@example.com", "111111"));
+        assertTrue(store.consume("ann@example.com", "222222"));
+    }
+
+    @Test
+    void expiredCodeIsRejected() throws InterruptedException {
+        store.put("ann@example.com", "123456", Duration.ofMillis(50));
+        Thread.sleep(80);
+
+        assertFalse(store.consume("ann@example.com", "123456"));
+    }
+
+    @Test
+    void tickReclaimsExpiredCodesAndKeepsLiveOnes() throws InterruptedException {
+        store.put("expired@example.com", "111111", Duration.ofMillis(10));
+        store.put("live@example.com", "222222", Duration.ofMinutes(5));
+        // Longer than one turn of the wheel: filed in a slot that comes due before it expires
+        store.put("long@example.com", "333333", Duration.ofMinutes(30));
+
+        // The expired code's one-second slot has to come due
+        Thread.sleep(2100);
+        store.tick();
+
+        assertEquals(2, store.size());
+        assertTrue(store.consume("live@example.com", "222222"));
+        assertTrue(store.consume("long@example.com", "333333"));
+    }
+
+    @Test
+    void replacedCodeIsNotRemovedByTheOldSlot() throws InterruptedException {
+        store.put("ann@example.com", "111111", Duration.ofMillis(10));
+        store.put("ann@example.com", "222222", Duration.ofMinutes(5));
+
+        Thread.sleep(2100);
+        store.tick();
+
+        assertTrue(store.consume("ann@example.com", "222222"));
+    }
+}
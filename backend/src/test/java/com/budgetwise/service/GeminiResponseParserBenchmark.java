@@ -0,0 +1,121 @@
+package com.budgetwise.service;
+
+import com.budgetwise.dto.GeminiDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a receipt-scan reply: the typed GeminiDto path (as the
+ * RestTemplate converter and the streaming relay do it) against the raw Map
+ * walk with three replaceAll calls that AIService used before. The reply
+ * carries the safety ratings and usage metadata Gemini really sends.
+ *
+ * Run with: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *           "-Dexec.args=-cp %classpath com.budgetwise.service.GeminiResponseParserBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeminiResponseParserBenchmark {
+
+    private static final String RECEIPT_TEXT = "```json\\n{\\\"title\\\": \\\"Corner Cafe\\\", \\\"amount\\\": 12.5, "
+            + "\\\"category\\\": \\\"Food\\\", \\\"date\\\": \\\"2024-01-15\\\"}\\n```";
+
+    private static final String REPLY = "{\"candidates\": [{\"content\": {\"parts\": [{\"text\": \"" + RECEIPT_TEXT + "\"}],"
+            + " \"role\": \"model\"}, \"finishReason\": \"STOP\", \"index\": 0, \"safetyRatings\": ["
+            + "{\"category\": \"HARM_CATEGORY_SEXUALLY_EXPLICIT\", \"probability\": \"NEGLIGIBLE\"},"
+            + " {\"category\": \"HARM_CATEGORY_HATE_SPEECH\", \"probability\": \"NEGLIGIBLE\"},"
+            + " {\"category\": \"HARM_CATEGORY_HARASSMENT\", \"probability\": \"NEGLIGIBLE\"},"
+            + " {\"category\": \"HARM_CATEGORY_DANGEROUS_CONTENT\", \"probability\": \"NEGLIGIBLE\"}]}],"
+            + " \"usageMetadata\": {\"promptTokenCount\": 1290, \"candidatesTokenCount\": 41, \"totalTokenCount\": 1331},"
+            + " \"modelVersion\": \"gemini-2.5-flash-lite\"}";
+
+    private ObjectMapper objectMapper;
+    private ObjectReader responseReader;
+    private GeminiResponseParser parser;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        responseReader = objectMapper.readerFor(GeminiDto.Response.class);
+        parser = new GeminiResponseParser(objectMapper, new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public String typedReply() throws Exception {
+        GeminiDto.Response response = responseReader.readValue(REPLY);
+        return parser.firstCandidate(response, "receipt").text();
+    }
+
+    // What scanReceiptImage does now: the typed read plus fence stripping and schema validation
+    @Benchmark
+    public String typedReplyAndReceiptValidation() throws Exception {
+        GeminiDto.Response response = responseReader.readValue(REPLY);
+        return parser.receiptJson(parser.firstCandidate(response, "receipt").text());
+    }
+
+    @Benchmark
+    public String streamedChunk() {
+        return parser.chunk(REPLY, "chat").text();
+    }
+
+    // AIService.scanReceiptImage before the typed parser
+    @Benchmark
+    public String mapWalk() throws Exception {
+        Map<?, ?> body = objectMapper.readValue(REPLY, Map.class);
+        if (body.containsKey("candidates")) {
+            List<?> candidates = (List<?>) body.get("candidates");
+            if (candidates != null && !candidates.isEmpty()) {
+                Map<?, ?> candidate = (Map<?, ?>) candidates.get(0);
+                if (candidate.containsKey("content")) {
+                    Map<?, ?> content = (Map<?, ?>) candidate.get("content");
+                    if (content.containsKey("parts")) {
+                        List<?> parts = (List<?>) content.get("parts");
+                        if (parts != null && !parts.isEmpty()) {
+                            String text = (String) ((Map<?, ?>) parts.get(0)).get("text");
+                            return text.trim().replaceAll("^```json\\s*", "").replaceAll("^```\\s*", "")
+                                    .replaceAll("```\\s*$", "").trim();
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    // The streaming relay before the typed parser
+    @Benchmark
+    public String streamedChunkTree() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (JsonNode part : objectMapper.readTree(REPLY).path("candidates").path(0).path("content").path("parts")) {
+            text.append(part.path("text").asText(""));
+        }
+        return text.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GeminiResponseParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
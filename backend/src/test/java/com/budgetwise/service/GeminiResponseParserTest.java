@@ -0,0 +1,117 @@
+package com.budgetwise.service;
+
+import com.budgetwise.dto.GeminiDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeminiResponseParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final GeminiResponseParser parser = new GeminiResponseParser(objectMapper, registry);
+
+    private static final String VALID =
+            "{\"title\": \" Corner Cafe \", \"amount\": 12.5, \"category\": \"Food\", \"date\": \"2024-01-15\"}";
+
+    @Test
+    void validReceiptIsNormalizedToTheFourFields() throws Exception {
+        JsonNode receipt = objectMapper.readTree(parser.receiptJson(
+                "{\"title\": \"Corner Cafe\", \"amount\": 12.5, \"category\": \"Food\", \"date\": \"2024-01-15\","
+                        + " \"note\": \"ignored\"}"));
+
+        assertEquals("Corner Cafe", receipt.get("title").asText());
+        assertEquals(12.5, receipt.get("amount").asDouble());
+        assertEquals("Food", receipt.get("category").asText());
+        assertEquals("2024-01-15", receipt.get("date").asText());
+        assertEquals(4, receipt.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "```json\n%s\n```", "```\n%s\n```", "  %s  " })
+    void markdownFencesAndWhitespaceAreStripped(String wrapper) throws Exception {
+        JsonNode receipt = objectMapper.readTree(parser.receiptJson(wrapper.formatted(VALID)));
+
+        assertEquals("Corner Cafe", receipt.get("title").asText());
+    }
+
+    @Test
+    void zeroAmountIsAccepted() {
+        parser.receiptJson("{\"title\": \"Free sample\", \"amount\": 0, \"category\": \"General\", \"date\": \"2024-01-15\"}");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"title\": \"Cafe\", \"amount\": -3, \"category\": \"Food\", \"date\": \"2024-01-15\"}",
+            "{\"title\": \"Cafe\", \"amount\": \"12.50\", \"category\": \"Food\", \"date\": \"2024-01-15\"}",
+            "{\"title\": \"Cafe\", \"category\": \"Food\", \"date\": \"2024-01-15\"}" })
+    void invalidAmountIsRejected(String json) {
+        assertInvalid(json, "amount");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"title\": \"Cafe\", \"amount\": 3, \"category\": \"Food\", \"date\": \"15/01/2024\"}",
+            "{\"title\": \"Cafe\", \"amount\": 3, \"category\": \"Food\", \"date\": \"2024-02-30\"}",
+            "{\"title\": \"Cafe\", \"amount\": 3, \"category\": \"Food\", \"date\": 20240115}" })
+    void invalidDateIsRejected(String json) {
+        assertInvalid(json, "date");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"title\": \"Cafe\", \"amount\": 3, \"category\": \"Groceries\", \"date\": \"2024-01-15\"}",
+            "{\"title\": \"Cafe\", \"amount\": 3, \"category\": \"food\", \"date\": \"2024-01-15\"}" })
+    void unknownCategoryIsRejected(String json) {
+        assertInvalid(json, "category");
+    }
+
+    @Test
+    void blankTitleIsRejected() {
+        assertInvalid("{\"title\": \"  \", \"amount\": 3, \"category\": \"Food\", \"date\": \"2024-01-15\"}", "title");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "Sorry, I can't read this receipt.", "[1, 2]", "{\"title\": " })
+    void nonObjectOutputIsRejected(String text) {
+        GeminiResponseParser.InvalidReceiptException e = assertThrows(
+                GeminiResponseParser.InvalidReceiptException.class, () -> parser.receiptJson(text));
+        assertEquals("Could not parse receipt", e.getMessage());
+    }
+
+    private void assertInvalid(String json, String field) {
+        GeminiResponseParser.InvalidReceiptException e = assertThrows(
+                GeminiResponseParser.InvalidReceiptException.class, () -> parser.receiptJson(json));
+        assertTrue(e.getMessage().endsWith("invalid " + field), e.getMessage());
+    }
+
+    @Test
+    void streamedChunksExposeTextAndOnlyTheLastFinishReason() {
+        GeminiDto.Candidate first = parser.chunk(
+                "{\"candidates\": [{\"content\": {\"parts\": [{\"text\": \"Hel\"}]}}]}", "chat");
+        GeminiDto.Candidate last = parser.chunk(
+                "{\"candidates\": [{\"content\": {\"parts\": [{\"text\": \"lo\"}]}, \"finishReason\": \"MAX_TOKENS\"}],"
+                        + " \"usageMetadata\": {\"promptTokenCount\": 7, \"candidatesTokenCount\": 2}}", "chat");
+
+        assertEquals("Hel", first.text());
+        assertNull(first.finishReason());
+        assertEquals("lo", last.text());
+        assertEquals("MAX_TOKENS", last.finishReason());
+        assertEquals(1, registry.get("ai.gemini.responses").tag("finishReason", "MAX_TOKENS").counter().count());
+        assertEquals(7, registry.get("ai.gemini.tokens").tag("type", "prompt").summary().totalAmount());
+    }
+
+    @Test
+    void unreadableChunkIsSkipped() {
+        assertNull(parser.chunk("[DONE]", "chat"));
+        assertNull(parser.chunk("{\"promptFeedback\": {}}", "chat"));
+    }
+}
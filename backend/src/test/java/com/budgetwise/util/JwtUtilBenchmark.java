@@ -0,0 +1,78 @@
+package com.budgetwise.util;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Per-request token checking in JwtRequestFilter: verify() against the
+ * extractUsername / extractUserId / validateToken sequence it replaced, where
+ * every call rebuilt the HMAC key and parser and parsed the token again.
+ *
+ * Run with: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *           "-Dexec.args=-cp %classpath com.budgetwise.util.JwtUtilBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtUtilBenchmark {
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = JwtUtilTest.newJwtUtil(JwtUtilTest.SECRET, 3_600_000);
+        token = jwtUtil.generateToken("ann@example.com", "u1");
+    }
+
+    @Benchmark
+    public JwtUtil.VerifiedToken verify() {
+        return jwtUtil.verify(token);
+    }
+
+    @Benchmark
+    public void extractThenValidate(Blackhole blackhole) {
+        String username = extractClaim(token, Claims::getSubject);
+        blackhole.consume(extractClaim(token, claims -> claims.get(JwtUtil.USER_ID_CLAIM, String.class)));
+        // validateToken: the subject again, then the expiry
+        blackhole.consume(username.equals(extractClaim(token, Claims::getSubject))
+                && !extractClaim(token, Claims::getExpiration).before(new Date()));
+    }
+
+    // JwtUtil.extractClaim before the single-parse change
+    private static <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
+        Claims claims = Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(JwtUtilTest.SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+        return claimsResolver.apply(claims);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtUtilBenchmark.class.getSimpleName()).build()).run();
+    }
+}
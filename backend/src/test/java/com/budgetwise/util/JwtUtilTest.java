@@ -0,0 +1,84 @@
+package com.budgetwise.util;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtUtilTest {
+
+    static final String SECRET = "test-secret-that-is-long-enough-for-hs256-signing";
+
+    private JwtUtil jwtUtil;
+
+    static JwtUtil newJwtUtil(String secret, long expirationMillis) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", secret);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", expirationMillis);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = newJwtUtil(SECRET, 60_000);
+    }
+
+    @Test
+    void verifyReturnsSubjectUserIdAndExpiry() {
+        JwtUtil.VerifiedToken token = jwtUtil.verify(jwtUtil.generateToken("ann@example.com", "u1"));
+
+        assertEquals("ann@example.com", token.subject());
+        assertEquals("u1", token.userId());
+        assertNull(token.purpose());
+        assertNotNull(token.expiresAt());
+    }
+
+    @Test
+    void olderTokensWithoutUserIdStillVerify() {
+        JwtUtil.VerifiedToken token = jwtUtil.verify(jwtUtil.generateToken("ann@example.com"));
+
+        assertEquals("ann@example.com", token.subject());
+        assertNull(token.userId());
+    }
+
+    @Test
+    void resetTokensCarryTheirPurpose() {
+        JwtUtil.VerifiedToken token = jwtUtil.verify(jwtUtil.generateResetToken("ann@example.com"));
+
+        assertEquals(JwtUtil.PASSWORD_RESET_PURPOSE, token.purpose());
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        String token = newJwtUtil(SECRET, -1_000).generateToken("ann@example.com", "u1");
+
+        assertThrows(ExpiredJwtException.class, () -> jwtUtil.verify(token));
+    }
+
+    @Test
+    void tamperedPayloadIsRejected() {
+        String[] parts = jwtUtil.generateToken("ann@example.com", "u1").split("\\.");
+        String forged = jwtUtil.generateToken("eve@example.com", "u2").split("\\.")[1];
+
+        assertThrows(JwtException.class, () -> jwtUtil.verify(parts[0] + "." + forged + "." + parts[2]));
+    }
+
+    @Test
+    void tokenSignedWithAnotherKeyIsRejected() {
+        String token = newJwtUtil(SECRET + "-other", 60_000).generateToken("ann@example.com", "u1");
+
+        assertThrows(JwtException.class, () -> jwtUtil.verify(token));
+    }
+
+    @Test
+    void malformedTokenIsRejected() {
+        assertThrows(JwtException.class, () -> jwtUtil.verify("not-a-jwt"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.budgetwise.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProviderGuardTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private ProviderGuard guard(int failureThreshold, Duration openDuration, int maxConcurrent) {
+        return new ProviderGuard("test", "Test provider", failureThreshold, openDuration, maxConcurrent,
+                Duration.ofMillis(10), registry);
+    }
+
+    private static void fail(ProviderGuard guard) {
+        assertThrows(IllegalStateException.class, () -> guard.call(() -> {
+            throw new IllegalStateException("provider down");
+        }));
+    }
+
+    @Test
+    void opensAfterConsecutiveFailuresAndFailsFast() {
+        ProviderGuard guard = guard(3, Duration.ofMinutes(1), 5);
+        fail(guard);
+        fail(guard);
+        assertEquals(ProviderGuard.State.CLOSED, guard.getState());
+        fail(guard);
+
+        assertEquals(ProviderGuard.State.OPEN, guard.getState());
+        assertThrows(ProviderGuard.ProviderUnavailableException.class, () -> guard.call(() -> "never runs"));
+        assertEquals(1, registry.get("provider.rejected").tag("reason", "circuit_open").counter().count());
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        ProviderGuard guard = guard(2, Duration.ofMinutes(1), 5);
+        fail(guard);
+        guard.call(() -> "ok");
+        fail(guard);
+
+        assertEquals(ProviderGuard.State.CLOSED, guard.getState());
+    }
+
+    @Test
+    void clientErrorsOtherThan429DoNotCount() {
+        ProviderGuard guard = guard(1, Duration.ofMinutes(1), 5);
+        guard.acquire().failure(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+        assertEquals(ProviderGuard.State.CLOSED, guard.getState());
+
+        guard.acquire().failure(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS));
+        assertEquals(ProviderGuard.State.OPEN, guard.getState());
+    }
+
+    @Test
+    void halfOpenLetsOneTrialThroughAndClosesOnSuccess() throws InterruptedException {
+        ProviderGuard guard = guard(1, Duration.ofMillis(50), 5);
+        fail(guard);
+        Thread.sleep(80);
+
+        ProviderGuard.Permit trial = guard.acquire();
+        assertEquals(ProviderGuard.State.HALF_OPEN, guard.getState());
+        assertThrows(ProviderGuard.ProviderUnavailableException.class, guard::acquire);
+
+        trial.success();
+        assertEquals(ProviderGuard.State.CLOSED, guard.getState());
+        guard.acquire().success();
+    }
+
+    @Test
+    void failedTrialReopensTheCircuit() throws InterruptedException {
+        ProviderGuard guard = guard(1, Duration.ofMillis(50), 5);
+        fail(guard);
+        Thread.sleep(80);
+
+        fail(guard);
+
+        assertEquals(ProviderGuard.State.OPEN, guard.getState());
+        assertThrows(ProviderGuard.ProviderUnavailableException.class, guard::acquire);
+    }
+
+    @Test
+    void abandonedTrialLeavesCircuitHalfOpenForTheNextCall() throws InterruptedException {
+        ProviderGuard guard = guard(1, Duration.ofMillis(50), 5);
+        fail(guard);
+        Thread.sleep(80);
+
+        guard.acquire().abandon();
+        assertEquals(ProviderGuard.State.HALF_OPEN, guard.getState());
+
+        guard.acquire().success();
+        assertEquals(ProviderGuard.State.CLOSED, guard.getState());
+    }
+
+    @Test
+    void bulkheadLimitsConcurrentCallsAndReleaseIsIdempotent() {
+        ProviderGuard guard = guard(5, Duration.ofMinutes(1), 2);
+        ProviderGuard.Permit first = guard.acquire();
+        ProviderGuard.Permit second = guard.acquire();
+        assertThrows(ProviderGuard.ProviderUnavailableException.class, guard::acquire);
+        assertEquals(2, registry.get("provider.bulkhead.in_use").gauge().value());
+
+        first.success();
+        first.success();
+        first.abandon();
+        ProviderGuard.Permit third = guard.acquire();
+        assertThrows(ProviderGuard.ProviderUnavailableException.class, guard::acquire,
+                "a permit released twice must not free two slots");
+
+        second.success();
+        third.success();
+        assertEquals(0, registry.get("provider.bulkhead.in_use").gauge().value());
+        assertEquals(2, registry.get("provider.rejected").tag("reason", "bulkhead_full").counter().count());
+    }
+}
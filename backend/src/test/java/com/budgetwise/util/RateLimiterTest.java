@@ -0,0 +1,147 @@
+package com.budgetwise.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private RateLimiter limiter(int capacity, Duration refillInterval, int maxKeys) {
+        return new RateLimiter("test", capacity, refillInterval, maxKeys, registry);
+    }
+
+    @Test
+    void allowsABurstUpToCapacityThenRejectsWithRetryAfter() {
+        RateLimiter limiter = limiter(3, Duration.ofSeconds(10), 100);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire("k").allowed());
+        }
+
+        RateLimiter.Decision rejected = limiter.tryAcquire("k");
+        assertFalse(rejected.allowed());
+        assertTrue(rejected.retryAfterSeconds() > 0 && rejected.retryAfterSeconds() <= 10,
+                "retry after " + rejected.retryAfterSeconds());
+        assertEquals(3, registry.get("ratelimit.requests").tag("result", "allowed").counter().count());
+        assertEquals(1, registry.get("ratelimit.requests").tag("result", "rejected").counter().count());
+    }
+
+    @Test
+    void refillsOneTokenPerInterval() throws InterruptedException {
+        RateLimiter limiter = limiter(2, Duration.ofMillis(200), 100);
+        assertTrue(limiter.tryAcquire("k").allowed());
+        assertTrue(limiter.tryAcquire("k").allowed());
+        assertFalse(limiter.tryAcquire("k").allowed());
+
+        Thread.sleep(250);
+
+        assertTrue(limiter.tryAcquire("k").allowed());
+        assertFalse(limiter.tryAcquire("k").allowed(), "only one interval has passed");
+    }
+
+    @Test
+    void keysHaveSeparateBuckets() {
+        RateLimiter limiter = limiter(1, Duration.ofMinutes(1), 100);
+        assertTrue(limiter.tryAcquire("a").allowed());
+        assertFalse(limiter.tryAcquire("a").allowed());
+
+        assertTrue(limiter.tryAcquire("b").allowed());
+    }
+
+    @Test
+    void concurrentCallersNeverExceedCapacity() throws Exception {
+        int capacity = 100;
+        RateLimiter limiter = limiter(capacity, Duration.ofMinutes(1), 100);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> workers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    int allowed = 0;
+                    for (int i = 0; i < 100; i++) {
+                        if (limiter.tryAcquire("shared").allowed()) {
+                            allowed++;
+                        }
+                    }
+                    return allowed;
+                }));
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> worker : workers) {
+                total += worker.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(capacity, total);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void keyCountStaysBounded() {
+        RateLimiter limiter = limiter(1, Duration.ofMinutes(1), 160);
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("client-" + i);
+        }
+
+        assertTrue(limiter.size() <= 160, "size " + limiter.size());
+        assertTrue(registry.get("ratelimit.evictions").functionCounter().count() > 0);
+        assertEquals(limiter.size(), registry.get("ratelimit.keys").gauge().value());
+    }
+
+    @Test
+    void fullStripeDropsRefilledBucketsBeforeBusyOnes() throws InterruptedException {
+        // 16 stripes of 2 keys each; all three keys land in the same stripe
+        RateLimiter limiter = limiter(1, Duration.ofMillis(200), 32);
+        List<String> keys = sameStripeKeys(3);
+        String idle = keys.get(0);
+        String busy = keys.get(1);
+        String next = keys.get(2);
+
+        assertTrue(limiter.tryAcquire(idle).allowed());
+        Thread.sleep(250); // idle's bucket is full again
+        assertTrue(limiter.tryAcquire(busy).allowed());
+        assertTrue(limiter.tryAcquire(next).allowed());
+
+        assertEquals(1, registry.get("ratelimit.evictions").functionCounter().count());
+        assertFalse(limiter.tryAcquire(busy).allowed(), "the in-use bucket must keep its state");
+    }
+
+    private static List<String> sameStripeKeys(int count) {
+        List<String> keys = new ArrayList<>();
+        int stripe = -1;
+        for (int i = 0; keys.size() < count; i++) {
+            String key = "key-" + i;
+            int keyStripe = Math.floorMod(key.hashCode(), 16);
+            if (stripe < 0) {
+                stripe = keyStripe;
+            }
+            if (keyStripe == stripe) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> limiter(0, Duration.ofSeconds(1), 10));
+        assertThrows(IllegalArgumentException.class, () -> limiter(1, Duration.ZERO, 10));
+    }
+}
@@ -0,0 +1,104 @@
+package com.budgetwise.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TtlCacheTest {
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedFirst() {
+        TtlCache<String, Integer> cache = new TtlCache<>(2, Duration.ofMinutes(1));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a"); // "b" is now the least recently used
+        cache.put("c", 3);
+
+        assertEquals(1, cache.peek("a"));
+        assertNull(cache.peek("b"));
+        assertEquals(3, cache.peek("c"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    void entriesExpireAfterTtl() throws InterruptedException {
+        TtlCache<String, Integer> cache = new TtlCache<>(10, Duration.ofMillis(50));
+        cache.put("a", 1);
+        assertEquals(1, cache.get("a"));
+
+        Thread.sleep(80);
+
+        assertNull(cache.peek("a"));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size(), "an expired entry is dropped when read");
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    void putRefreshesTtl() throws InterruptedException {
+        TtlCache<String, Integer> cache = new TtlCache<>(10, Duration.ofMillis(100));
+        cache.put("a", 1);
+        Thread.sleep(60);
+        cache.put("a", 2);
+        Thread.sleep(60);
+
+        assertEquals(2, cache.get("a"));
+    }
+
+    @Test
+    void computeIfAbsentLoadsOnceAndSkipsNullsAndFailures() {
+        TtlCache<String, Integer> cache = new TtlCache<>(10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(7, cache.computeIfAbsent("a", k -> { loads.incrementAndGet(); return 7; }));
+        assertEquals(7, cache.computeIfAbsent("a", k -> { loads.incrementAndGet(); return 8; }));
+        assertEquals(1, loads.get());
+
+        assertNull(cache.computeIfAbsent("none", k -> null));
+        assertThrows(IllegalStateException.class,
+                () -> cache.computeIfAbsent("boom", k -> { throw new IllegalStateException(); }));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void invalidateIfRemovesMatchingValues() {
+        TtlCache<String, Integer> cache = new TtlCache<>(10, Duration.ofMinutes(1));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+
+        cache.invalidateIf(v -> v % 2 == 1);
+
+        assertNull(cache.peek("a"));
+        assertEquals(2, cache.peek("b"));
+        assertNull(cache.peek("c"));
+    }
+
+    @Test
+    void metricsFollowCounters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TtlCache<String, Integer> cache = new TtlCache<String, Integer>(10, Duration.ofMinutes(1))
+                .registerMetrics(registry, "test");
+        cache.put("a", 1);
+        cache.get("a");
+        cache.get("b");
+
+        assertEquals(1, registry.get("cache.gets").tag("cache", "test").tag("result", "hit").functionCounter().count());
+        assertEquals(1, registry.get("cache.gets").tag("cache", "test").tag("result", "miss").functionCounter().count());
+        assertEquals(1, registry.get("cache.size").tag("cache", "test").gauge().value());
+    }
+
+    @Test
+    void rejectsNonPositiveSize() {
+        assertThrows(IllegalArgumentException.class, () -> new TtlCache<String, Integer>(0, Duration.ofMinutes(1)));
+    }
+}
@@ -0,0 +1,155 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stand-in for the Gemini and Resend APIs, for load-testing the backend
+ * offline. Latency and failures can be injected at start-up or changed while
+ * a test is running.
+ *
+ * Run (JDK 17+, no build needed):
+ *   java tools/FakeProviderServer.java --port 8089 --latency-ms 2000 --jitter-ms 500 --error-rate 0.2
+ *
+ * Point the backend at it:
+ *   --openai.api.url=http://localhost:8089/v1/models/fake:generateContent
+ *   --resend.api.url=http://localhost:8089/emails
+ *   --resend.api.batch-url=http://localhost:8089/emails/batch
+ *
+ * Change behaviour mid-run:
+ *   curl -X POST 'http://localhost:8089/_control?latencyMs=30000&errorRate=1'
+ *
+ * Endpoints: POST ...:generateContent, POST ...:streamGenerateContent (SSE),
+ * POST /emails, POST /emails/batch. Injected errors answer 503.
+ */
+public class FakeProviderServer {
+
+    private static volatile long latencyMs = 200;
+    private static volatile long jitterMs = 0;
+    private static volatile double errorRate = 0;
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseArgs(args);
+        int port = Integer.parseInt(options.getOrDefault("port", "8089"));
+        latencyMs = Long.parseLong(options.getOrDefault("latency-ms", "200"));
+        jitterMs = Long.parseLong(options.getOrDefault("jitter-ms", "0"));
+        errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0"));
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 512);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", FakeProviderServer::handle);
+        server.start();
+        System.out.println("Fake Gemini/Resend listening on :" + port + " " + settings());
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+
+            if (path.equals("/_control")) {
+                control(exchange);
+                return;
+            }
+
+            sleep(latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0));
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                respond(exchange, 503, "application/json", "{\"error\": {\"code\": 503, \"message\": \"injected failure\"}}");
+                return;
+            }
+
+            if (path.endsWith(":streamGenerateContent")) {
+                stream(exchange);
+            } else if (path.endsWith(":generateContent")) {
+                respond(exchange, 200, "application/json", candidate(
+                        "{\\\"title\\\": \\\"Fake Store\\\", \\\"amount\\\": 12.5, \\\"category\\\": \\\"Food\\\", \\\"date\\\": \\\"2024-01-15\\\"}", "STOP"));
+            } else if (path.equals("/emails/batch")) {
+                // one id per message; each message object has exactly one "from"
+                int messages = request.split("\"from\"", -1).length - 1;
+                StringBuilder ids = new StringBuilder();
+                for (int i = 0; i < messages; i++) {
+                    ids.append(i > 0 ? ", " : "").append("{\"id\": \"").append(UUID.randomUUID()).append("\"}");
+                }
+                respond(exchange, 200, "application/json", "{\"data\": [" + ids + "]}");
+            } else if (path.equals("/emails")) {
+                respond(exchange, 200, "application/json", "{\"id\": \"" + UUID.randomUUID() + "\"}");
+            } else {
+                respond(exchange, 404, "text/plain", "not found");
+            }
+        }
+    }
+
+    // Three chunks, 100 ms apart, in Gemini's alt=sse framing
+    private static void stream(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        String[] chunks = { "This is ", "a fake ", "streamed answer." };
+        for (int i = 0; i < chunks.length; i++) {
+            // Like Gemini, only the last chunk carries the finish reason
+            String chunk = candidate(chunks[i], i == chunks.length - 1 ? "STOP" : null);
+            out.write(("data: " + chunk + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            sleep(100);
+        }
+    }
+
+    private static String candidate(String escapedText, String finishReason) {
+        return "{\"candidates\": [{\"content\": {\"parts\": [{\"text\": \"" + escapedText + "\"}]}"
+                + (finishReason != null ? ", \"finishReason\": \"" + finishReason + "\"" : "") + "}]}";
+    }
+
+    private static void control(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                String[] kv = pair.split("=", 2);
+                String value = kv.length > 1 ? URLDecoder.decode(kv[1], StandardCharsets.UTF_8) : "";
+                switch (kv[0]) {
+                    case "latencyMs" -> latencyMs = Long.parseLong(value);
+                    case "jitterMs" -> jitterMs = Long.parseLong(value);
+                    case "errorRate" -> errorRate = Double.parseDouble(value);
+                    default -> { }
+                }
+            }
+        }
+        System.out.println("Settings changed: " + settings());
+        respond(exchange, 200, "text/plain", settings());
+    }
+
+    private static String settings() {
+        return "latencyMs=" + latencyMs + " jitterMs=" + jitterMs + " errorRate=" + errorRate;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        return options;
+    }
+}